@@ -0,0 +1,144 @@
+package org.bcmoj.client.bench;
+
+import org.bcmoj.client.JsonConfigBuilder;
+import org.bcmoj.client.JudgeOptions;
+import org.bcmoj.client.ProblemData;
+import org.bcmoj.client.net.DeflateCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost against bytes on the wire for the negotiated deflate mode: the config upload of a problem with 20
+ * checkpoints of {@code checkpointKb} KiB each, and a 1000-checkpoint response frame, plain and at each
+ * deflate {@code level}. The wireBytes counter is the size of one encoded message.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+    private static final int EXAMPLES = 20;
+    private static final int RESPONSE_CHECKPOINTS = 1000;
+
+    @Param({"1", "16", "256"})
+    public int checkpointKb;
+
+    @Param({"1", "6", "9"})
+    public int level;
+
+    private byte[] config;
+    private byte[] response;
+    private byte[] compressedConfig;
+    private byte[] compressedResponse;
+    private DeflateCodec codec;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class WireBytes {
+        public long wireBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            wireBytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        List<ProblemData.Example> examples = new ArrayList<>();
+        for (int i = 0; i < EXAMPLES; i++) {
+            examples.add(new ProblemData.Example(text(checkpointKb * 1024, i), text(checkpointKb * 1024, i + 1)));
+        }
+        ProblemData problemData = new ProblemData(1000, "Benchmark", 1000, 262144, 0, examples);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonConfigBuilder.streamConfig(problemData, new JudgeOptions(true, true, 1, true), false, 0).writeTo(out);
+        config = out.toByteArray();
+        response = ResponseProcessorBenchmark.newFormat(RESPONSE_CHECKPOINTS).getBytes(StandardCharsets.UTF_8);
+        codec = new DeflateCodec(level);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(compressed);
+        try (OutputStream body = codec.deflating(data)) {
+            body.write(config);
+        }
+        compressedConfig = compressed.toByteArray();
+        compressed.reset();
+        codec.writeFrame(data, response);
+        compressedResponse = compressed.toByteArray();
+    }
+
+    @TearDown
+    public void tearDown() {
+        codec.close();
+    }
+
+    @Benchmark
+    public long uploadPlain(WireBytes wire) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream();
+        DataOutputStream out = new DataOutputStream(counter);
+        out.writeInt(config.length);
+        out.write(config);
+        wire.wireBytes = counter.count;
+        return counter.count;
+    }
+
+    @Benchmark
+    public long uploadDeflate(WireBytes wire) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream();
+        DataOutputStream out = new DataOutputStream(counter);
+        out.writeInt(config.length);
+        try (OutputStream body = codec.deflating(out)) {
+            body.write(config);
+        }
+        wire.wireBytes = counter.count;
+        return counter.count;
+    }
+
+    @Benchmark
+    public long inflateUpload() throws IOException {
+        return codec.readDeflated(new DataInputStream(new ByteArrayInputStream(compressedConfig)), OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public long responseDeflate(WireBytes wire) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream();
+        codec.writeFrame(new DataOutputStream(counter), response);
+        wire.wireBytes = counter.count;
+        return counter.count;
+    }
+
+    @Benchmark
+    public byte[] responseInflate() throws IOException {
+        return codec.readFrame(new DataInputStream(new ByteArrayInputStream(compressedResponse)));
+    }
+
+    private static String text(int size, int seed) {
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append((i * 31 + seed) % 100000);
+            sb.append(i % 16 == 15 ? '\n' : ' ');
+        }
+        return sb.toString();
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.bcmoj.client.bench;
+
+import org.bcmoj.client.JsonConfigBuilder;
+import org.bcmoj.client.JudgeOptions;
+import org.bcmoj.client.ProblemData;
+import org.bcmoj.client.net.ConfigPayload;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the judge config for a problem with {@code examples} examples of {@code exampleKb} KiB input and
+ * output each, through the ObjectNode tree and through the streaming generator.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigBuilderBenchmark {
+    @Param({"1", "64", "1024"})
+    public int exampleKb;
+
+    @Param({"20"})
+    public int examples;
+
+    @Param({"true", "false"})
+    public boolean useNewFormat;
+
+    private ProblemData problemData;
+    private JudgeOptions options;
+
+    @Setup
+    public void setup() {
+        List<ProblemData.Example> list = new ArrayList<>();
+        for (int i = 0; i < examples; i++) {
+            list.add(new ProblemData.Example(text(exampleKb * 1024, i), text(exampleKb * 1024, i + 1)));
+        }
+        problemData = new ProblemData(1000, "Benchmark", 1000, 262144, 0, list);
+        options = new JudgeOptions(true, true, 1, useNewFormat);
+    }
+
+    @Benchmark
+    public String buildConfig() {
+        return JsonConfigBuilder.buildConfig(problemData, options);
+    }
+
+    @Benchmark
+    public int streamConfig() throws IOException {
+        ConfigPayload payload = JsonConfigBuilder.streamConfig(problemData, options, false, 0);
+        payload.writeTo(OutputStream.nullOutputStream());
+        return payload.length();
+    }
+
+    private static String text(int size, int seed) {
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append((i * 31 + seed) % 100000);
+            sb.append(i % 16 == 15 ? '\n' : ' ');
+        }
+        return sb.toString();
+    }
+}
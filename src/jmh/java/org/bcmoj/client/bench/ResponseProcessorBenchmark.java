@@ -0,0 +1,98 @@
+package org.bcmoj.client.bench;
+
+import org.bcmoj.client.EvaluationResult;
+import org.bcmoj.client.net.CheckpointParser;
+import org.bcmoj.client.net.CheckpointTable;
+import org.bcmoj.client.net.ResponseProcessor;
+import org.bcmoj.client.net.ResultAccumulator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses one judge response of {@code checkpoints} results through the JsonNode-based processResponses, the
+ * streaming CheckpointParser into TestCaseResults, and the streaming parser into a reused CheckpointTable.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseProcessorBenchmark {
+    @Param({"new", "old"})
+    public String format;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int checkpoints;
+
+    private List<String> responses;
+    private byte[] frame;
+    private CheckpointParser parser;
+    private CheckpointTable table;
+
+    @Setup
+    public void setup() {
+        String response = format.equals("new") ? newFormat(checkpoints) : oldFormat(checkpoints);
+        responses = List.of(response);
+        frame = response.getBytes(StandardCharsets.UTF_8);
+        parser = new CheckpointParser();
+        table = new CheckpointTable(checkpoints);
+    }
+
+    @Benchmark
+    public EvaluationResult processResponses() {
+        return ResponseProcessor.processResponses(responses, ResponseProcessor.DEFAULT_RESULT_MAPPING);
+    }
+
+    @Benchmark
+    public EvaluationResult streamingParser() throws IOException {
+        ResultAccumulator accumulator = new ResultAccumulator(ResponseProcessor.DEFAULT_RESULT_MAPPING, null);
+        parser.parseFrame(frame, accumulator);
+        return accumulator.toEvaluationResult();
+    }
+
+    @Benchmark
+    public int columnar() throws IOException {
+        table.clear();
+        parser.parseFrame(frame, table);
+        return table.accepted();
+    }
+
+    @Benchmark
+    public CheckpointTable processResponsesColumnar() {
+        table.clear();
+        return ResponseProcessor.processResponses(responses, table);
+    }
+
+    static String newFormat(int checkpoints) {
+        StringBuilder sb = new StringBuilder("{\"checkpoints\":{");
+        for (int i = 1; i <= checkpoints; i++) {
+            if (i > 1) {
+                sb.append(',');
+            }
+            sb.append('"').append(i).append("\":{\"res\":").append(verdict(i)).append(",\"time\":").append(i % 997).append(".25,\"mem\":").append(1024 + i).append('}');
+        }
+        return sb.append("}}").toString();
+    }
+
+    static String oldFormat(int checkpoints) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 1; i <= checkpoints; i++) {
+            if (i > 1) {
+                sb.append(',');
+            }
+            sb.append('"').append(i).append("_res\":").append(verdict(i))
+                    .append(",\"").append(i).append("_time\":").append(i % 997).append(".25")
+                    .append(",\"").append(i).append("_mem\":").append(1024 + i);
+        }
+        return sb.append('}').toString();
+    }
+
+    private static int verdict(int index) {
+        return index % 10 == 0 ? -3 : 1;
+    }
+}
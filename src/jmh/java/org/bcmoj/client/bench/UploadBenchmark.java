@@ -0,0 +1,69 @@
+package org.bcmoj.client.bench;
+
+import org.bcmoj.client.CodingClient;
+import org.bcmoj.client.net.JudgeConnection;
+import org.bcmoj.client.net.NetworkService;
+import org.bcmoj.client.stub.StubJudgeServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trip of one submission of {@code fileKb} KiB to a stub judge on the loopback interface, with and without keep-alive, and the
+ * standalone source hash for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UploadBenchmark {
+    private static final String CONFIG = "{\"timeLimit\":1000,\"securityCheck\":false,\"enableO2\":false,\"compareMode\":1}";
+
+    @Param({"16", "1024", "16384"})
+    public int fileKb;
+
+    @Param({"true", "false"})
+    public boolean keepAlive;
+
+    private StubJudgeServer judge;
+    private NetworkService networkService;
+    private File source;
+
+    @Setup
+    public void setup() throws IOException {
+        CodingClient.setConsoleLogging(false);
+        judge = new StubJudgeServer(0);
+        judge.setCheckpoints(1);
+        networkService = new NetworkService();
+        networkService.setKeepAlive(keepAlive);
+        source = File.createTempFile("upload-bench", ".cpp");
+        byte[] data = new byte[fileKb * 1024];
+        new Random(42).nextBytes(data);
+        Files.write(source.toPath(), data);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        networkService.getConnectionPool().close();
+        judge.close();
+        Files.deleteIfExists(source.toPath());
+    }
+
+    @Benchmark
+    public List<String> sendAndReceive() throws IOException {
+        return networkService.sendAndReceive(source.getPath(), CONFIG, "127.0.0.1", judge.getPort(), 10000, progress -> {
+        });
+    }
+
+    @Benchmark
+    public String hashFile() throws IOException {
+        return JudgeConnection.hashFile(source);
+    }
+}
@@ -0,0 +1,171 @@
+package org.bcmoj.client;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
+import javafx.scene.Node;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Checkpoint results as a sortable, filterable TableView. TableView only creates cells for the visible rows, so
+ * large submissions stay cheap to render; results reported from the submission thread are queued and added in
+ * one batch per frame pulse, and the submission's progress is published on the same pulse.
+ */
+public class CheckpointResultsView {
+    private static final String ALL = "All verdicts";
+    private static final String NOT_ACCEPTED = "Not Accepted";
+
+    private final ObservableList<TestCaseResult> results = FXCollections.observableArrayList();
+    private final FilteredList<TestCaseResult> filtered = new FilteredList<>(results);
+    private final Queue<TestCaseResult> pending = new ConcurrentLinkedQueue<>();
+    private final ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(0);
+    private volatile double pendingProgress;
+    private final TableView<TestCaseResult> table;
+    private final ComboBox<String> verdictFilter = new ComboBox<>();
+    private final Label countLabel = new Label();
+    private final VBox root;
+    private final AnimationTimer pulse;
+
+    public CheckpointResultsView(Collection<String> verdicts) {
+        SortedList<TestCaseResult> sorted = new SortedList<>(filtered);
+        table = new TableView<>(sorted);
+        sorted.comparatorProperty().bind(table.comparatorProperty());
+        table.setPrefHeight(220);
+        table.setPlaceholder(new Label("No checkpoint results yet"));
+
+        TableColumn<TestCaseResult, Integer> indexColumn = new TableColumn<>("#");
+        indexColumn.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(indexOf(c.getValue())));
+        indexColumn.setPrefWidth(70);
+        TableColumn<TestCaseResult, String> verdictColumn = new TableColumn<>("Verdict");
+        verdictColumn.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().resultText()));
+        verdictColumn.setPrefWidth(220);
+        TableColumn<TestCaseResult, Double> timeColumn = new TableColumn<>("Time (ms)");
+        timeColumn.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().timeUsed()));
+        timeColumn.setPrefWidth(120);
+        TableColumn<TestCaseResult, Long> memoryColumn = new TableColumn<>("Memory (KB)");
+        memoryColumn.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().memoryUsed()));
+        memoryColumn.setPrefWidth(120);
+        table.getColumns().add(indexColumn);
+        table.getColumns().add(verdictColumn);
+        table.getColumns().add(timeColumn);
+        table.getColumns().add(memoryColumn);
+
+        verdictFilter.getItems().add(ALL);
+        verdictFilter.getItems().add(NOT_ACCEPTED);
+        verdictFilter.getItems().addAll(new TreeSet<>(verdicts));
+        verdictFilter.getSelectionModel().selectFirst();
+        verdictFilter.valueProperty().addListener((obs, oldVal, newVal) -> applyFilter(newVal));
+
+        HBox header = new HBox(10, new Label("Checkpoints:"), verdictFilter, countLabel);
+        root = new VBox(5, header, table);
+        updateCount();
+
+        pulse = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                drain();
+            }
+        };
+    }
+
+    public Node getNode() {
+        return root;
+    }
+
+    public void start() {
+        pulse.start();
+    }
+
+    public void stop() {
+        pulse.stop();
+    }
+
+    /**
+     * Safe to call from any thread; the row shows up on the next frame pulse.
+     */
+    public void add(TestCaseResult testCase) {
+        pending.add(testCase);
+    }
+
+    /**
+     * Safe to call from any thread; only the latest value is shown, on the next frame pulse.
+     */
+    public void setProgress(double value) {
+        pendingProgress = value;
+    }
+
+    /**
+     * Progress of the running submission from 0 to 1, updated on the FX thread.
+     */
+    public ReadOnlyDoubleProperty progressProperty() {
+        return progress.getReadOnlyProperty();
+    }
+
+    /**
+     * Must be called on the FX thread.
+     */
+    public void clear() {
+        pending.clear();
+        results.clear();
+        pendingProgress = 0;
+        progress.set(0);
+        updateCount();
+    }
+
+    private void drain() {
+        progress.set(pendingProgress);
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<TestCaseResult> batch = new ArrayList<>();
+        TestCaseResult testCase;
+        while ((testCase = pending.poll()) != null) {
+            batch.add(testCase);
+        }
+        results.addAll(batch);
+        updateCount();
+    }
+
+    private void applyFilter(String verdict) {
+        if (verdict == null || verdict.equals(ALL)) {
+            filtered.setPredicate(null);
+        } else if (verdict.equals(NOT_ACCEPTED)) {
+            filtered.setPredicate(testCase -> !testCase.resultText().equals("Accepted"));
+        } else {
+            filtered.setPredicate(testCase -> testCase.resultText().equals(verdict));
+        }
+        updateCount();
+    }
+
+    private void updateCount() {
+        countLabel.setText(filtered.size() == results.size() ? results.size() + " results" : "showing " + filtered.size() + " of " + results.size());
+    }
+
+    /**
+     * Numeric index so that checkpoint 10 sorts after checkpoint 9.
+     */
+    private static Integer indexOf(TestCaseResult testCase) {
+        try {
+            return Integer.valueOf(testCase.index());
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+}
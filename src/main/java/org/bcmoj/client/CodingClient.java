@@ -12,17 +12,27 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import org.bcmoj.client.db.DatabaseConfig;
 import org.bcmoj.client.db.DatabaseService;
+import org.bcmoj.client.net.ConfigPayload;
+import org.bcmoj.client.net.JudgeCluster;
 import org.bcmoj.client.net.NetworkService;
 import org.bcmoj.client.net.ResponseProcessor;
+import org.bcmoj.client.net.RetryPolicy;
+import org.bcmoj.client.net.Submission;
+import org.bcmoj.client.net.SubmissionDeadlines;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class CodingClient extends Application {
+    private static final int MAX_LOGGED_CONFIG_BYTES = 64 * 1024;
     private static CodingClient instance;
+    private static volatile boolean consoleLogging = true;
 
     private TextField dbHost, dbPort, dbUser, dbPass, dbName;
     private TextField problemInput;
@@ -30,16 +40,21 @@ public class CodingClient extends Application {
     private ComboBox<String> compareMode, errorType;
     private TextField cppPathDisplay;
     private TextArea outputBox;
+    private LogPipeline logPipeline;
+    private CheckpointResultsView resultsView;
+    private ProblemPreviewLoader previewLoader;
     private ProgressBar progressBar;
-    private DatabaseConfig dbConfig;
+    private volatile DatabaseConfig dbConfig;
     private Map<Integer, String> resultMapping;
     private DatabaseService databaseService;
     private NetworkService networkService;
+    private JudgeCluster judgeCluster;
     private TextField serverHostField, serverPortField;
     private TextArea customJsonInput;
     private CheckBox useCustomJson;
     private TextArea problemInfoArea;
     private TextField timeoutField;
+    private CheckBox adaptiveTimeouts;
 
 
     @Override
@@ -48,29 +63,34 @@ public class CodingClient extends Application {
         initializeServices();
         initializeResultMapping();
         primaryStage.setTitle("BCMOJ Judge Client");
-        primaryStage.setScene(new Scene(createMainLayout(), 896, 815));
+        primaryStage.setScene(new Scene(createMainLayout(), 896, 900));
         primaryStage.show();
         primaryStage.widthProperty().addListener((obs, oldVal, newVal) -> System.out.println("Window resized: width=" + newVal + ", height=" + primaryStage.getHeight()));
         primaryStage.heightProperty().addListener((obs, oldVal, newVal) -> System.out.println("Window resized: width=" + primaryStage.getWidth() + ", height=" + newVal));
     }
 
+    @Override
+    public void stop() {
+        logPipeline.close();
+        resultsView.stop();
+        previewLoader.close();
+        databaseService.close();
+        if (judgeCluster != null) {
+            judgeCluster.close();
+        }
+        networkService.getConnectionPool().close();
+    }
+
     private void initializeServices() {
         dbConfig = new DatabaseConfig("localhost", 3306, "root", "password", "bcmoj");
         databaseService = new DatabaseService();
         networkService = new NetworkService();
+        previewLoader = new ProblemPreviewLoader(databaseService, () -> dbConfig, text -> Platform.runLater(() -> problemInfoArea.setText(text)));
         initializeResultMapping();
     }
 
     private void initializeResultMapping() {
-        resultMapping = new HashMap<>();
-        resultMapping.put(-5, "Security Check Failed");
-        resultMapping.put(-4, "Compile Error");
-        resultMapping.put(-3, "Wrong Answer");
-        resultMapping.put(2, "Real Time Limit Exceeded");
-        resultMapping.put(3, "Memory Limit Exceeded");
-        resultMapping.put(4, "Runtime Error");
-        resultMapping.put(5, "System Error");
-        resultMapping.put(1, "Accepted");
+        resultMapping = new HashMap<>(ResponseProcessor.DEFAULT_RESULT_MAPPING);
     }
 
     private VBox createMainLayout() {
@@ -86,6 +106,7 @@ public class CodingClient extends Application {
         progressBar.setPrefWidth(Double.MAX_VALUE);
         mainLayout.getChildren().add(progressBar);
         mainLayout.getChildren().add(createOutputSection());
+        progressBar.progressProperty().bind(resultsView.progressProperty());
         mainLayout.getChildren().add(createBottomBar());
 
         return mainLayout;
@@ -135,9 +156,7 @@ public class CodingClient extends Application {
         problemInput = new TextField();
         problemInput.setPromptText("Problem ID");
         problemInput.textProperty().addListener((obs, oldV, newV) -> {
-            if (!newV.trim().isEmpty()) {
-                new Thread(this::loadProblemInfo).start();
-            }
+            previewLoader.request(newV);
         });
         securityCheck = new CheckBox("Enable security check");
         enableO2 = new CheckBox("Enable O2 optimization");
@@ -222,8 +241,12 @@ public class CodingClient extends Application {
         VBox outputSection = new VBox(5);
         outputBox = new TextArea();
         outputBox.setEditable(false);
-        outputBox.setPrefRowCount(15);
-        outputSection.getChildren().addAll(new Label("Logs:"), outputBox);
+        outputBox.setPrefRowCount(8);
+        logPipeline = new LogPipeline(outputBox);
+        logPipeline.start();
+        resultsView = new CheckpointResultsView(resultMapping.values());
+        resultsView.start();
+        outputSection.getChildren().addAll(resultsView.getNode(), new Label("Logs:"), outputBox);
         return outputSection;
     }
 
@@ -243,11 +266,15 @@ public class CodingClient extends Application {
         timeoutField = new TextField("200000");
         timeoutField.setPrefWidth(100);
         Label timeoutLabel = new Label("Response Timeout (ms):");
+        adaptiveTimeouts = new CheckBox("Adaptive");
+        adaptiveTimeouts.setTooltip(new Tooltip("Derive per-phase deadlines from the problem's time limit and checkpoints; custom JSON still uses the timeout"));
         Button clearLogsBtn = new Button("Clear Logs");
-        clearLogsBtn.setOnAction(e -> outputBox.clear());
+        clearLogsBtn.setOnAction(e -> logPipeline.clear());
+        Button logFileBtn = new Button("Log File...");
+        logFileBtn.setOnAction(e -> chooseLogFile());
         Region spacer = new Region();
         HBox.setHgrow(spacer, Priority.ALWAYS);
-        bottomBar.getChildren().addAll(statusBox, spacer, timeoutLabel, timeoutField, clearLogsBtn);
+        bottomBar.getChildren().addAll(statusBox, spacer, timeoutLabel, timeoutField, adaptiveTimeouts, logFileBtn, clearLogsBtn);
         return bottomBar;
     }
 
@@ -263,8 +290,22 @@ public class CodingClient extends Application {
         }
     }
 
+    private void chooseLogFile() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Append logs to file");
+        fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("Log Files", "*.log", "*.txt"), new FileChooser.ExtensionFilter("All Files", "*.*"));
+        File selectedFile = fileChooser.showSaveDialog(null);
+        try {
+            logPipeline.setFileSink(selectedFile != null ? selectedFile.toPath() : null);
+            log(selectedFile != null ? "Logging to " + selectedFile.getAbsolutePath() : "File logging stopped");
+        } catch (IOException e) {
+            showError("Cannot open log file: " + e.getMessage());
+        }
+    }
+
     private void runEvaluation() {
-        outputBox.clear();
+        logPipeline.clear();
+        resultsView.clear();
         Task<Void> task = new Task<>() {
             @SuppressWarnings("CallToPrintStackTrace")
             @Override
@@ -276,24 +317,36 @@ public class CodingClient extends Application {
                         Platform.runLater(() -> showError());
                         return null;
                     }
-                    String serverIp = serverHostField.getText().trim();
-                    int serverPort = Integer.parseInt(serverPortField.getText().trim());
-                    String jsonConfig;
+                    JudgeCluster cluster = currentCluster();
+                    ConfigPayload jsonConfig;
+                    int expectedCheckpoints = 0;
+                    SubmissionDeadlines deadlines = SubmissionDeadlines.fixed(Integer.parseInt(timeoutField.getText().trim()));
                     if (useCustomJson.isSelected()) {
                         final String finalJson = customJsonInput.getText().trim();
                         Platform.runLater(() -> log("Using custom JSON:\n" + finalJson));
-                        jsonConfig = finalJson;
+                        jsonConfig = ConfigPayload.of(JsonConfigBuilder.applyErrorConfig(finalJson, errorMode.isSelected(), errorType.getSelectionModel().getSelectedIndex() + 1, useNewFormat.isSelected()));
                     } else {
                         int problemId = Integer.parseInt(problemInput.getText().trim());
                         ProblemData problemData = databaseService.getProblemFromDatabase(problemId, dbConfig);
-                        jsonConfig = buildJsonConfig(problemData);
+                        jsonConfig = JsonConfigBuilder.cachedConfig(problemData, currentOptions(), errorMode.isSelected(), errorType.getSelectionModel().getSelectedIndex() + 1);
+                        expectedCheckpoints = problemData.examples().size();
+                        if (adaptiveTimeouts.isSelected()) {
+                            deadlines = SubmissionDeadlines.derive(problemData.timeLimit(), expectedCheckpoints, new File(cppFile).length() + jsonConfig.length());
+                        }
                     }
-                    jsonConfig = JsonConfigBuilder.applyErrorConfig(jsonConfig, errorMode.isSelected(), errorType.getSelectionModel().getSelectedIndex() + 1, useNewFormat.isSelected());
-                    final String finalJson = jsonConfig;
-                    Platform.runLater(() -> log("Final JSON:\n" + finalJson));
-                    int timeout = Integer.parseInt(timeoutField.getText().trim());
-                    List<String> responses = networkService.sendAndReceive(cppFile, jsonConfig, serverIp, serverPort, timeout, progress -> Platform.runLater(() -> progressBar.setProgress(progress)));   //100000ms timeout
-                    Platform.runLater(() -> processResponses(responses));
+                    logFinalJson(jsonConfig);
+                    final SubmissionDeadlines finalDeadlines = deadlines;
+                    final int finalExpected = expectedCheckpoints;
+                    final ConfigPayload finalConfig = jsonConfig;
+                    // a retry only happens before the first checkpoint, so no row is added twice
+                    EvaluationResult result = cluster.executeStreaming((serverIp, serverPort, responded) -> networkService.sendAndStream(new Submission(new File(cppFile), finalConfig), serverIp, serverPort, finalDeadlines, resultsView::setProgress, resultMapping, (testCase, totals) -> {
+                        responded.run();
+                        resultsView.add(testCase);
+                        if (finalExpected > 0) {
+                            resultsView.setProgress((double) totals.totalTests() / finalExpected);
+                        }
+                    }));
+                    logSummary(result);
                 } catch (Exception e) {
                     Platform.runLater(() -> log("<Error> " + e.getMessage()));
                     e.printStackTrace();
@@ -304,27 +357,61 @@ public class CodingClient extends Application {
         new Thread(task).start();
     }
     private void updateDatabaseConfig() {
-        dbConfig = new DatabaseConfig(dbHost.getText().trim(), Integer.parseInt(dbPort.getText().trim()), dbUser.getText().trim(), dbPass.getText().trim(), dbName.getText().trim());
+        DatabaseConfig config = new DatabaseConfig(dbHost.getText().trim(), Integer.parseInt(dbPort.getText().trim()), dbUser.getText().trim(), dbPass.getText().trim(), dbName.getText().trim());
+        if (!config.equals(dbConfig)) {
+            previewLoader.invalidate();
+        }
+        dbConfig = config;
     }
 
-    private String buildJsonConfig(ProblemData problemData) {
-        return JsonConfigBuilder.buildConfig(problemData, securityCheck.isSelected(), enableO2.isSelected(), compareMode.getSelectionModel().getSelectedIndex() + 1, errorMode.isSelected(), errorType.getSelectionModel().getSelectedIndex() + 1, useNewFormat.isSelected());
+    /**
+     * The server field takes a comma-separated list of host[:port]; the port field is the default port.
+     * The cluster is kept between runs so its load statistics survive, and rebuilt when the list changes.
+     */
+    private synchronized JudgeCluster currentCluster() {
+        List<JudgeCluster.Endpoint> endpoints = JudgeCluster.Endpoint.parseList(serverHostField.getText().trim(), Integer.parseInt(serverPortField.getText().trim()));
+        if (judgeCluster == null || !judgeCluster.endpoints().equals(endpoints)) {
+            if (judgeCluster != null) {
+                judgeCluster.close();
+            }
+            judgeCluster = new JudgeCluster(networkService, endpoints);
+            judgeCluster.setRetryPolicy(RetryPolicy.DEFAULT);
+        }
+        return judgeCluster;
     }
 
-    private void processResponses(List<String> responses) {
-        EvaluationResult result = ResponseProcessor.processResponses(responses, resultMapping);
-        for (TestCaseResult testCase : result.testResults()) {
-            System.out.println(testCase);
-            log(String.format("Checkpoint %s: %s - %sms - %sKB", testCase.index(), testCase.resultText(), testCase.timeUsed(), testCase.memoryUsed()));
+    private JudgeOptions currentOptions() {
+        return new JudgeOptions(securityCheck.isSelected(), enableO2.isSelected(), compareMode.getSelectionModel().getSelectedIndex() + 1, useNewFormat.isSelected());
+    }
+
+    private void logFinalJson(ConfigPayload jsonConfig) throws IOException {
+        if (jsonConfig.length() > MAX_LOGGED_CONFIG_BYTES) {
+            log("Final JSON: " + jsonConfig.length() + " bytes (too large to show)");
+            return;
         }
+        ByteArrayOutputStream json = new ByteArrayOutputStream(jsonConfig.length());
+        jsonConfig.writeTo(json);
+        log("Final JSON:\n" + json.toString(StandardCharsets.UTF_8));
+    }
+
+    private void logSummary(EvaluationResult result) {
         log(String.format("\nTotal: %d, AC: %d, AvgTime: %.2fms, AvgMem: %dKB", result.totalTests(), result.accepted(), result.averageTime(), result.averageMemory()));
     }
 
     public static void log(String message) {
-        if (instance != null) {
-            Platform.runLater(() -> instance.outputBox.appendText(message + "\n"));
+        if (instance != null && instance.logPipeline != null) {
+            instance.logPipeline.append(message);
+        } else if (consoleLogging) {
+            System.out.println(message);
         }
     }
+
+    /**
+     * Turns the console fallback used when no window is open on or off, e.g. to keep load tests quiet.
+     */
+    public static void setConsoleLogging(boolean enabled) {
+        consoleLogging = enabled;
+    }
     private void showError() {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle("Error");
@@ -345,36 +432,14 @@ public class CodingClient extends Application {
 
     private void testServerConnection() {
         try {
-            String ip = serverHostField.getText().trim();
-            int port = Integer.parseInt(serverPortField.getText().trim());
-            networkService.testConnection(ip, port);
-            showInfo("Server connection successful.");
+            JudgeCluster cluster = currentCluster();
+            List<JudgeCluster.Endpoint> endpoints = cluster.endpoints();
+            cluster.testConnections();
+            showInfo(endpoints.size() == 1 ? "Server connection successful." : "All " + endpoints.size() + " servers connected successfully.");
         } catch (Exception e) {
             showError("Server connection failed: " + e.getMessage());
         }
     }
-    private void loadProblemInfo() {
-        try {
-            if (problemInput.getText().trim().isEmpty()) return;
-            int problemId = Integer.parseInt(problemInput.getText().trim());
-            ProblemData problemData = databaseService.getProblemFromDatabase(problemId, dbConfig);
-            StringBuilder sb = new StringBuilder();
-            sb.append("Title: ").append(problemData.problem().get("title")).append("\n");
-            sb.append("Time Limit: ").append(problemData.problem().get("time_limit")).append("ms").append("\n");
-            sb.append("Mem Limit: ").append(problemData.problem().get("mem_limit")).append("KiB").append("\n");
-            if (!problemData.examples().isEmpty()) {
-                Map<String, String> example = problemData.examples().get(0);
-                sb.append("=== Example Input ===\n").append(example.get("input")).append("\n");
-                sb.append("=== Example Output ===\n").append(example.get("output")).append("\n");
-            }
-            sb.append("=== Description ===\n").append(problemData.problem().get("description")).append("\n");
-            String text = sb.toString();
-            Platform.runLater(() -> problemInfoArea.setText(text));
-        } catch (Exception e) {
-            Platform.runLater(() -> problemInfoArea.setText("Error loading problem: " + e.getMessage()));
-        }
-    }
-
     private void showInfo(String msg) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("Info");
@@ -0,0 +1,87 @@
+package org.bcmoj.client;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serialized UTF-8 judge configs keyed by (problem, version, options, error mutation), bounded by total bytes.
+ * Problems without a version column only hit when the cached bytes were built from the same ProblemData instance.
+ */
+public class ConfigCache {
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private final long maxBytes;
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ConfigCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public ConfigCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized byte[] get(ProblemData problemData, JudgeOptions options, int mutation) {
+        Entry entry = entries.get(new Key(problemData.problemId(), problemData.version(), options, mutation));
+        if (entry != null && (problemData.version() != 0 || entry.source() == problemData)) {
+            hits.incrementAndGet();
+            return entry.bytes();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Whether a config of this size is worth keeping; very large configs would flush everything else.
+     */
+    public boolean accepts(long size) {
+        return size <= maxBytes / 4;
+    }
+
+    public synchronized void put(ProblemData problemData, JudgeOptions options, int mutation, byte[] bytes) {
+        if (!accepts(bytes.length)) {
+            return;
+        }
+        Entry previous = entries.put(new Key(problemData.problemId(), problemData.version(), options, mutation), new Entry(bytes, problemData));
+        if (previous != null) {
+            totalBytes -= previous.bytes().length;
+        }
+        totalBytes += bytes.length;
+        Iterator<Entry> it = entries.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            totalBytes -= it.next().bytes().length;
+            it.remove();
+        }
+    }
+
+    public synchronized void invalidate(int problemId) {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> entry = it.next();
+            if (entry.getKey().problemId() == problemId) {
+                totalBytes -= entry.getValue().bytes().length;
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    public synchronized String stats() {
+        return String.format("hits=%d, misses=%d, entries=%d, bytes=%d", hits.get(), misses.get(), entries.size(), totalBytes);
+    }
+
+    private record Key(int problemId, long version, JudgeOptions options, int mutation) {
+    }
+
+    private record Entry(byte[] bytes, ProblemData source) {
+    }
+}
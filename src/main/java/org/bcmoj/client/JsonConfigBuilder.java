@@ -1,13 +1,32 @@
 package org.bcmoj.client;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.bcmoj.client.metrics.Phase;
+import org.bcmoj.client.metrics.PipelineMetrics;
+import org.bcmoj.client.net.ConfigPayload;
+import org.bcmoj.client.net.TestDataSource;
+import org.bcmoj.client.net.TestDataStore;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
-import java.util.Map;
 
 public class JsonConfigBuilder {
     private static final ObjectMapper mapper = new ObjectMapper();
+    private static final JsonFactory factory = JsonFactory.builder().disable(StreamWriteFeature.AUTO_CLOSE_TARGET).build();
+    private static final ConfigCache configCache = new ConfigCache();
+    private static TestDataStore testDataStore;
+
+    public static String buildConfig(ProblemData problemData, JudgeOptions options) {
+        return buildConfig(problemData, options.securityCheck(), options.enableO2(), options.compareMode(), false, 0, options.useNewFormat());
+    }
 
     public static String buildConfig(ProblemData problemData, boolean securityCheck, boolean enableO2, int compareMode, boolean errorMode, int errorType, boolean useNewFormat) {
         try {
@@ -27,10 +46,252 @@ public class JsonConfigBuilder {
         }
     }
 
+    /**
+     * Streams the config as compact JSON straight into the submission's output stream, applying the error-injection
+     * mutations while generating. The length is measured with a counting pass, so no tree, String or byte[] copy
+     * of the test data is ever built.
+     */
+    public static ConfigPayload streamConfig(ProblemData problemData, JudgeOptions options, boolean errorMode, int errorType) throws IOException {
+        int mutation = errorMode ? errorType : 0;
+        ConfigPayload payload = new ConfigPayload() {
+            private int length = -1;
+
+            @Override
+            public int length() throws IOException {
+                if (length < 0) {
+                    CountingOutputStream counter = new CountingOutputStream();
+                    writeConfig(problemData, options, mutation, counter);
+                    length = Math.toIntExact(counter.count);
+                }
+                return length;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                writeConfig(problemData, options, mutation, out);
+            }
+        };
+        if (!options.testDataRefs()) {
+            return payload;
+        }
+        return referencing(payload, problemData, options, mutation, false);
+    }
+
+    /**
+     * Same config as streamConfig, served as precompiled bytes from the config cache when the problem has been
+     * judged with the same options before.
+     */
+    public static ConfigPayload cachedConfig(ProblemData problemData, JudgeOptions options, boolean errorMode, int errorType) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            return lookupOrBuild(problemData, options, errorMode, errorType);
+        } finally {
+            PipelineMetrics.get().recordSince(Phase.CONFIG_BUILD, startTime);
+        }
+    }
+
+    private static ConfigPayload lookupOrBuild(ProblemData problemData, JudgeOptions options, boolean errorMode, int errorType) throws IOException {
+        int mutation = errorMode ? errorType : 0;
+        byte[] bytes = configCache.get(problemData, options, mutation);
+        if (bytes == null) {
+            ConfigPayload payload = streamConfig(problemData, options, errorMode, errorType);
+            if (!configCache.accepts(payload.length())) {
+                return payload;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length());
+            payload.writeTo(out);
+            bytes = out.toByteArray();
+            configCache.put(problemData, options, mutation, bytes);
+        }
+        ConfigPayload payload = ConfigPayload.of(bytes);
+        return options.testDataRefs() ? referencing(payload, problemData, options, mutation, true) : payload;
+    }
+
+    /**
+     * Wraps a config whose checkpoints are test data references so the connection can serve the referenced
+     * test data, or fall back to the inline config when the judge does not support references.
+     */
+    private static ConfigPayload referencing(ConfigPayload references, ProblemData problemData, JudgeOptions options, int mutation, boolean cached) throws IOException {
+        TestDataStore store = getTestDataStore();
+        JudgeOptions inlineOptions = options.withTestDataRefs(false);
+        return new ConfigPayload() {
+            @Override
+            public int length() throws IOException {
+                return references.length();
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                references.writeTo(out);
+            }
+
+            @Override
+            public TestDataSource testData() {
+                return hash -> fetchTestData(store, problemData, hash);
+            }
+
+            @Override
+            public ConfigPayload inline() throws IOException {
+                return cached ? lookupOrBuild(problemData, inlineOptions, mutation != 0, mutation) : streamConfig(problemData, inlineOptions, mutation != 0, mutation);
+            }
+        };
+    }
+
+    /**
+     * Serves referenced test data from the store. A config from the cache may outlive the store's files (the
+     * temporary directory was cleaned up), so a missing file is written back from the problem data rather than
+     * leaving the judge without its test data.
+     */
+    private static byte[] fetchTestData(TestDataStore store, ProblemData problemData, String hash) {
+        byte[] data = store.get(hash);
+        if (data != null) {
+            return data;
+        }
+        try {
+            for (ProblemData.Example example : problemData.examples()) {
+                for (String text : new String[]{example.input(), example.output()}) {
+                    byte[] bytes = text.trim().getBytes(StandardCharsets.UTF_8);
+                    if (TestDataStore.hash(bytes).equals(hash)) {
+                        CodingClient.log("Test data " + hash + " was missing from " + store.getDirectory() + ", restoring it");
+                        try {
+                            store.put(text.trim());
+                        } catch (IOException e) {
+                            CodingClient.log("Failed to restore test data " + hash + ": " + e.getMessage());
+                        }
+                        return bytes;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            CodingClient.log("Failed to look up test data " + hash + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    public static ConfigCache getConfigCache() {
+        return configCache;
+    }
+
+    /**
+     * Store that test data is written to when a config is built with test data references, created under
+     * {@link TestDataStore#defaultDirectory()} on first use unless one has been set.
+     */
+    public static synchronized TestDataStore getTestDataStore() throws IOException {
+        if (testDataStore == null) {
+            testDataStore = new TestDataStore(TestDataStore.defaultDirectory());
+        }
+        return testDataStore;
+    }
+
+    public static synchronized void setTestDataStore(TestDataStore store) {
+        testDataStore = store;
+        configCache.invalidateAll();
+    }
+
+    private static void writeConfig(ProblemData problemData, JudgeOptions options, int mutation, OutputStream out) throws IOException {
+        TestDataStore store = options.testDataRefs() ? getTestDataStore() : null;
+        try (JsonGenerator gen = factory.createGenerator(out)) {
+            if (options.useNewFormat()) {
+                writeNewFormatConfig(gen, problemData, options, mutation, store);
+            } else {
+                writeOldFormatConfig(gen, problemData, options, mutation, store);
+            }
+        }
+    }
+
+    private static void writeNewFormatConfig(JsonGenerator gen, ProblemData problemData, JudgeOptions options, int mutation, TestDataStore store) throws IOException {
+        gen.writeStartObject();
+        if (mutation != 1) {
+            gen.writeNumberField("time_limit", mutation == 2 ? -100 : problemData.timeLimit());
+        }
+        gen.writeNumberField("mem_limit", 32768);
+        if (mutation != 3) {
+            gen.writeBooleanField("enable_security_check", options.securityCheck());
+        }
+        gen.writeBooleanField("enable_o2", options.enableO2());
+        gen.writeNumberField("compare_mode", options.compareMode());
+        if (mutation == 4) {
+            gen.writeStringField("checkpoints", "this should be an object");
+        } else {
+            gen.writeObjectFieldStart("checkpoints");
+            for (int i = 0; mutation != 6 && i < problemData.examples().size(); i++) {
+                ProblemData.Example example = problemData.examples().get(i);
+                gen.writeObjectFieldStart(String.valueOf(i + 1));
+                writeCheckpointField(gen, "in", example.input(), store);
+                if (mutation != 5) {
+                    writeCheckpointField(gen, "out", example.output(), store);
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndObject();
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writeOldFormatConfig(JsonGenerator gen, ProblemData problemData, JudgeOptions options, int mutation, TestDataStore store) throws IOException {
+        gen.writeStartObject();
+        if (mutation != 1) {
+            gen.writeNumberField("timeLimit", mutation == 2 ? -100 : problemData.timeLimit());
+        }
+        if (mutation == 4) {
+            gen.writeStringField("checkpoints", "this should be an object");
+        } else {
+            gen.writeObjectFieldStart("checkpoints");
+            for (int i = 0; mutation != 6 && i < problemData.examples().size(); i++) {
+                ProblemData.Example example = problemData.examples().get(i);
+                int index = i + 1;
+                writeCheckpointField(gen, index + "_in", example.input(), store);
+                if (mutation != 5) {
+                    writeCheckpointField(gen, index + "_out", example.output(), store);
+                }
+            }
+            gen.writeEndObject();
+        }
+        if (mutation != 3) {
+            gen.writeBooleanField("securityCheck", options.securityCheck());
+        }
+        gen.writeBooleanField("enableO2", options.enableO2());
+        gen.writeNumberField("compareMode", options.compareMode());
+        gen.writeEndObject();
+    }
+
+    /**
+     * Writes the trimmed test data inline, or as a "{name}_ref" field holding its hash in the store.
+     */
+    private static void writeCheckpointField(JsonGenerator gen, String name, String value, TestDataStore store) throws IOException {
+        if (store == null) {
+            writeTrimmedField(gen, name, value);
+        } else {
+            gen.writeStringField(name + "_ref", store.put(value.trim()));
+        }
+    }
+
+    /**
+     * Writes value.trim() without materializing the trimmed copy.
+     */
+    private static void writeTrimmedField(JsonGenerator gen, String name, String value) throws IOException {
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        gen.writeFieldName(name);
+        if (start == 0 && end == value.length()) {
+            gen.writeString(value);
+        } else {
+            StringReader reader = new StringReader(value);
+            reader.skip(start);
+            gen.writeString(reader, end - start);
+        }
+    }
+
     private static ObjectNode buildNewFormatConfig(ProblemData problemData, boolean securityCheck, boolean enableO2, int compareMode) {
         ObjectNode config = mapper.createObjectNode();
 
-        config.put("time_limit", (Integer) problemData.problem().get("time_limit"));
+        config.put("time_limit", problemData.timeLimit());
         config.put("mem_limit", 32768);
         config.put("enable_security_check", securityCheck);
         config.put("enable_o2", enableO2);
@@ -38,11 +299,11 @@ public class JsonConfigBuilder {
 
         ObjectNode checkpoints = mapper.createObjectNode();
         for (int i = 0; i < problemData.examples().size(); i++) {
-            Map<String, String> example = problemData.examples().get(i);
+            ProblemData.Example example = problemData.examples().get(i);
             int index = i + 1;
             ObjectNode checkpoint = mapper.createObjectNode();
-            checkpoint.put("in", example.get("input").trim());
-            checkpoint.put("out", example.get("output").trim());
+            checkpoint.put("in", example.input().trim());
+            checkpoint.put("out", example.output().trim());
             checkpoints.set(String.valueOf(index), checkpoint);
         }
         config.set("checkpoints", checkpoints);
@@ -55,13 +316,13 @@ public class JsonConfigBuilder {
         ObjectNode checkpoints = mapper.createObjectNode();
 
         for (int i = 0; i < problemData.examples().size(); i++) {
-            Map<String, String> example = problemData.examples().get(i);
+            ProblemData.Example example = problemData.examples().get(i);
             int index = i + 1;
-            checkpoints.put(index + "_in", example.get("input").trim());
-            checkpoints.put(index + "_out", example.get("output").trim());
+            checkpoints.put(index + "_in", example.input().trim());
+            checkpoints.put(index + "_out", example.output().trim());
         }
 
-        config.put("timeLimit", (Integer) problemData.problem().get("time_limit"));
+        config.put("timeLimit", problemData.timeLimit());
         config.set("checkpoints", checkpoints);
         config.put("securityCheck", securityCheck);
         config.put("enableO2", enableO2);
@@ -154,4 +415,18 @@ public class JsonConfigBuilder {
             throw new RuntimeException("Failed to apply error config to custom JSON", e);
         }
     }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package org.bcmoj.client;
+
+/**
+ * {@code testDataRefs} sends checkpoints as content hashes that the judge fetches on demand instead of inline.
+ */
+public record JudgeOptions(boolean securityCheck, boolean enableO2, int compareMode, boolean useNewFormat, boolean testDataRefs) {
+    public JudgeOptions(boolean securityCheck, boolean enableO2, int compareMode, boolean useNewFormat) {
+        this(securityCheck, enableO2, compareMode, useNewFormat, false);
+    }
+
+    public JudgeOptions withTestDataRefs(boolean testDataRefs) {
+        return new JudgeOptions(securityCheck, enableO2, compareMode, useNewFormat, testDataRefs);
+    }
+}
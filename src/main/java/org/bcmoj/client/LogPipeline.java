@@ -0,0 +1,209 @@
+package org.bcmoj.client;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.control.TextArea;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves log lines from any thread into the log TextArea without a Platform.runLater per line. Producers only
+ * enqueue; once per frame pulse the FX thread drains the queue and appends everything in a single call. The
+ * TextArea keeps at most {@code maxLines} lines, dropping the oldest, and lines can also be written to a file.
+ */
+public class LogPipeline {
+    public static final int DEFAULT_MAX_LINES = 5000;
+    public static final int DEFAULT_MAX_PENDING = 100_000;
+    private static final int MAX_LINES_PER_PULSE = 2000;
+
+    private final TextArea textArea;
+    private final int maxLines;
+    private final int maxPending;
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final ArrayDeque<Integer> lineLengths = new ArrayDeque<>();
+    private final Queue<String> filePending = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService fileWriter;
+    private final AnimationTimer pulse;
+    private volatile BufferedWriter fileSink;
+    private volatile Path filePath;
+
+    public LogPipeline(TextArea textArea) {
+        this(textArea, DEFAULT_MAX_LINES, DEFAULT_MAX_PENDING);
+    }
+
+    public LogPipeline(TextArea textArea, int maxLines, int maxPending) {
+        this.textArea = textArea;
+        this.maxLines = maxLines;
+        this.maxPending = maxPending;
+        this.fileWriter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "log-file-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        fileWriter.scheduleWithFixedDelay(this::flushFile, 200, 200, TimeUnit.MILLISECONDS);
+        this.pulse = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                drain();
+            }
+        };
+    }
+
+    public void start() {
+        pulse.start();
+    }
+
+    /**
+     * Safe to call from any thread. When the FX thread falls behind by more than {@code maxPending} lines, new
+     * lines are counted as dropped instead of piling up; the file sink still receives them.
+     */
+    public void append(String message) {
+        if (fileSink != null) {
+            filePending.add(message);
+        }
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        pending.add(message);
+    }
+
+    /**
+     * Must be called on the FX thread.
+     */
+    public void clear() {
+        String message;
+        while ((message = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+        }
+        lineLengths.clear();
+        textArea.clear();
+    }
+
+    /**
+     * Starts copying every subsequent line to the file, appending to it; null stops the file sink.
+     */
+    public synchronized void setFileSink(Path path) throws IOException {
+        BufferedWriter previous = fileSink;
+        fileSink = null;
+        fileWriter.submit(() -> {
+            writePending(previous);
+            closeWriter(previous);
+        });
+        if (path != null) {
+            fileSink = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        filePath = path;
+    }
+
+    public Path getFileSink() {
+        return filePath;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private void drain() {
+        long droppedLines = dropped.getAndSet(0);
+        if (pendingCount.get() == 0 && droppedLines == 0) {
+            return;
+        }
+        StringBuilder batch = new StringBuilder();
+        int lines = 0;
+        String message;
+        while (lines < MAX_LINES_PER_PULSE && (message = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            addLine(batch, message);
+            lines++;
+        }
+        if (droppedLines > 0) {
+            addLine(batch, "... " + droppedLines + " log lines dropped ...");
+        }
+        int trim = 0;
+        while (lineLengths.size() > maxLines) {
+            trim += lineLengths.removeFirst();
+        }
+        int retained = textArea.getLength() - trim;
+        if (retained <= 0) {
+            // everything shown so far scrolls out, along with the start of the batch itself
+            textArea.setText(batch.substring(-retained));
+        } else {
+            if (trim > 0) {
+                textArea.deleteText(0, trim);
+            }
+            textArea.appendText(batch.toString());
+        }
+    }
+
+    private void addLine(StringBuilder batch, String message) {
+        int start = batch.length();
+        batch.append(message).append('\n');
+        lineLengths.addLast(batch.length() - start);
+    }
+
+    private void flushFile() {
+        writePending(fileSink);
+    }
+
+    private void writePending(BufferedWriter writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            String message;
+            boolean wrote = false;
+            while ((message = filePending.poll()) != null) {
+                writer.write(message);
+                writer.newLine();
+                wrote = true;
+            }
+            if (wrote) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write log file: " + e.getMessage());
+        }
+    }
+
+    private void closeWriter(BufferedWriter writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close log file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the frame pulse and flushes and closes the file sink.
+     */
+    public void close() {
+        pulse.stop();
+        fileWriter.submit(this::flushFile);
+        fileWriter.submit(() -> closeWriter(fileSink));
+        fileWriter.shutdown();
+        try {
+            fileWriter.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
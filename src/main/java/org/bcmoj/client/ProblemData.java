@@ -1,7 +1,12 @@
 package org.bcmoj.client;
 
 import java.util.List;
-import java.util.Map;
 
-public record ProblemData(Map<String, Object> problem, List<Map<String, String>> examples) {
+/**
+ * The columns the judge config needs. The description is not part of it; it is loaded on demand for the info panel.
+ * {@code version} comes from the problems table's version column (0 when unavailable) and changes whenever the problem does.
+ */
+public record ProblemData(int problemId, String title, int timeLimit, int memLimit, long version, List<Example> examples) {
+    public record Example(String input, String output) {
+    }
 }
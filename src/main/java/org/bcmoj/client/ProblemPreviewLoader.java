@@ -0,0 +1,148 @@
+package org.bcmoj.client;
+
+import org.bcmoj.client.db.DatabaseConfig;
+import org.bcmoj.client.db.DatabaseService;
+import org.bcmoj.client.db.ProblemCache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Loads the problem preview while the user types the problem ID. Requests are debounced on one shared worker
+ * thread, a newer request cancels the pending one, and a result is only shown if no newer request was made in
+ * the meantime. Rendered previews are cached, so going back to a recent problem shows it without a lookup.
+ */
+public class ProblemPreviewLoader implements AutoCloseable {
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 300;
+    private static final int MAX_CACHED_PREVIEWS = 64;
+
+    private final DatabaseService databaseService;
+    private final Supplier<DatabaseConfig> dbConfig;
+    private final Consumer<String> display;
+    private final long debounceMillis;
+    private final ScheduledExecutorService executor;
+    private final AtomicLong generation = new AtomicLong();
+    private final Map<Integer, CachedPreview> previews = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, CachedPreview> eldest) {
+            return size() > MAX_CACHED_PREVIEWS;
+        }
+    };
+    private ScheduledFuture<?> pending;
+
+    /**
+     * The display callback is invoked on the worker thread; callers hand it over to their UI thread.
+     */
+    public ProblemPreviewLoader(DatabaseService databaseService, Supplier<DatabaseConfig> dbConfig, Consumer<String> display) {
+        this(databaseService, dbConfig, display, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    public ProblemPreviewLoader(DatabaseService databaseService, Supplier<DatabaseConfig> dbConfig, Consumer<String> display, long debounceMillis) {
+        this.databaseService = databaseService;
+        this.dbConfig = dbConfig;
+        this.display = display;
+        this.debounceMillis = debounceMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "problem-preview");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public synchronized void request(String text) {
+        long current = generation.incrementAndGet();
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) {
+            return;
+        }
+        int problemId;
+        try {
+            problemId = Integer.parseInt(trimmed);
+        } catch (NumberFormatException e) {
+            pending = executor.schedule(() -> publish(current, "Error loading problem: invalid problem ID \"" + trimmed + "\""), debounceMillis, TimeUnit.MILLISECONDS);
+            return;
+        }
+        String cached = cachedPreview(problemId);
+        if (cached != null) {
+            pending = executor.schedule(() -> publish(current, cached), 0, TimeUnit.MILLISECONDS);
+            return;
+        }
+        pending = executor.schedule(() -> load(current, problemId), debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void invalidate() {
+        previews.clear();
+    }
+
+    private void load(long requestGeneration, int problemId) {
+        if (requestGeneration != generation.get()) {
+            return;
+        }
+        String text;
+        try {
+            DatabaseConfig config = dbConfig.get();
+            ProblemData problemData = databaseService.getProblemFromDatabase(problemId, config);
+            if (requestGeneration != generation.get()) {
+                return;
+            }
+            text = render(problemData, databaseService.getProblemDescription(problemId, config));
+            synchronized (this) {
+                previews.put(problemId, new CachedPreview(text, System.currentTimeMillis()));
+            }
+        } catch (Exception e) {
+            text = "Error loading problem: " + e.getMessage();
+        }
+        publish(requestGeneration, text);
+    }
+
+    private void publish(long requestGeneration, String text) {
+        if (requestGeneration == generation.get()) {
+            display.accept(text);
+        }
+    }
+
+    private synchronized String cachedPreview(int problemId) {
+        CachedPreview preview = previews.get(problemId);
+        if (preview == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - preview.loadedAt() >= ProblemCache.DEFAULT_TTL_MILLIS) {
+            previews.remove(problemId);
+            return null;
+        }
+        return preview.text();
+    }
+
+    private static String render(ProblemData problemData, String description) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Title: ").append(problemData.title()).append("\n");
+        sb.append("Time Limit: ").append(problemData.timeLimit()).append("ms").append("\n");
+        sb.append("Mem Limit: ").append(problemData.memLimit()).append("KiB").append("\n");
+        if (!problemData.examples().isEmpty()) {
+            ProblemData.Example example = problemData.examples().get(0);
+            sb.append("=== Example Input ===\n").append(example.input()).append("\n");
+            sb.append("=== Example Output ===\n").append(example.output()).append("\n");
+        }
+        sb.append("=== Description ===\n").append(description).append("\n");
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private record CachedPreview(String text, long loadedAt) {
+    }
+}
@@ -0,0 +1,111 @@
+package org.bcmoj.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Judged results keyed by (source SHA-256, config SHA-256). Recent results are kept in memory; with a directory
+ * configured every result is also written to {@code <sourceHash>-<configHash>.json} so it survives restarts;
+ * the file is written under a temporary name and moved into place, so a reader never sees a partial result.
+ */
+public class ResultStore {
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Path directory;
+    private final int maxEntries;
+    private final Map<String, EvaluationResult> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ResultStore() {
+        this(null, DEFAULT_MAX_ENTRIES);
+    }
+
+    public ResultStore(Path directory) {
+        this(directory, DEFAULT_MAX_ENTRIES);
+    }
+
+    public ResultStore(Path directory, int maxEntries) {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EvaluationResult> eldest) {
+                return size() > ResultStore.this.maxEntries;
+            }
+        };
+    }
+
+    public EvaluationResult get(String sourceHash, String configHash) {
+        String key = key(sourceHash, configHash);
+        EvaluationResult result;
+        synchronized (this) {
+            result = entries.get(key);
+        }
+        if (result == null && directory != null) {
+            Path file = directory.resolve(key + ".json");
+            if (Files.exists(file)) {
+                try {
+                    result = mapper.readValue(file.toFile(), EvaluationResult.class);
+                    synchronized (this) {
+                        entries.put(key, result);
+                    }
+                } catch (IOException e) {
+                    CodingClient.log("Result store: ignoring unreadable " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        (result != null ? hits : misses).incrementAndGet();
+        return result;
+    }
+
+    public void put(String sourceHash, String configHash, EvaluationResult result) {
+        String key = key(sourceHash, configHash);
+        synchronized (this) {
+            entries.put(key, result);
+        }
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+                Path temp = Files.createTempFile(directory, key, ".tmp");
+                try {
+                    mapper.writeValue(temp.toFile(), result);
+                    Files.move(temp, directory.resolve(key + ".json"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    Files.deleteIfExists(temp);
+                    throw e;
+                }
+            } catch (IOException e) {
+                CodingClient.log("Result store: failed to persist " + key + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public String stats() {
+        synchronized (this) {
+            return String.format("hits=%d, misses=%d, cached=%d", hits.get(), misses.get(), entries.size());
+        }
+    }
+
+    private static String key(String sourceHash, String configHash) {
+        return sourceHash + "-" + configHash;
+    }
+
+    public enum Mode {
+        /** Always submit to the judge. */
+        OFF,
+        /** Return the stored result without contacting the judge. */
+        TRUST,
+        /** Submit anyway and report whether the judge still agrees with the stored result. */
+        VERIFY
+    }
+}
@@ -0,0 +1,191 @@
+package org.bcmoj.client;
+
+import org.bcmoj.client.db.DatabaseConfig;
+import org.bcmoj.client.db.DatabaseService;
+import org.bcmoj.client.net.ConfigPayload;
+import org.bcmoj.client.net.JudgeCluster;
+import org.bcmoj.client.net.JudgeConnection;
+import org.bcmoj.client.net.NetworkService;
+import org.bcmoj.client.net.ResponseListener;
+import org.bcmoj.client.net.ResultAccumulator;
+import org.bcmoj.client.net.Submission;
+import org.bcmoj.client.net.SubmissionDeadlines;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The fetch, build, send and process pipeline behind the Start button, usable without the JavaFX layer.
+ * Retries and hedges of a submission all send the same source hash. With a result store and deduplication on,
+ * submissions are also keyed by the SHA-256 of their source and config: an identical submission made while one
+ * is still in flight waits for that one's result instead of being judged again.
+ */
+public class SubmissionService {
+    private final DatabaseService databaseService;
+    private final NetworkService networkService;
+    private final DatabaseConfig dbConfig;
+    private final Map<Integer, String> resultMapping;
+    private final Map<String, CompletableFuture<EvaluationResult>> inFlight = new ConcurrentHashMap<>();
+    private volatile ResultStore resultStore;
+    private volatile ResultStore.Mode dedupMode = ResultStore.Mode.OFF;
+    private volatile boolean adaptiveDeadlines;
+
+    public SubmissionService(DatabaseService databaseService, NetworkService networkService, DatabaseConfig dbConfig, Map<Integer, String> resultMapping) {
+        this.databaseService = databaseService;
+        this.networkService = networkService;
+        this.dbConfig = dbConfig;
+        this.resultMapping = resultMapping;
+    }
+
+    /**
+     * Enables content-addressed deduplication: identical (source, config) pairs are answered from the store
+     * (TRUST) or re-judged and compared against it (VERIFY), and are judged only once while in flight together.
+     */
+    public void setResultStore(ResultStore resultStore, ResultStore.Mode dedupMode) {
+        this.resultStore = resultStore;
+        this.dedupMode = dedupMode;
+    }
+
+    /**
+     * Replaces the fixed timeout with per-phase deadlines derived from each problem's time limit, checkpoint
+     * count and the latencies observed so far (see SubmissionDeadlines.derive), so a hung judge is given up on
+     * early while a long but healthy run is not cut off.
+     */
+    public void setAdaptiveDeadlines(boolean adaptiveDeadlines) {
+        this.adaptiveDeadlines = adaptiveDeadlines;
+    }
+
+    public EvaluationResult submit(String sourceFile, int problemId, JudgeOptions options, String serverHost, int serverPort, int timeout) throws IOException, SQLException {
+        return submit(sourceFile, problemId, options, serverHost, serverPort, timeout, null);
+    }
+
+    public EvaluationResult submit(String sourceFile, int problemId, JudgeOptions options, String serverHost, int serverPort, int timeout, ResponseListener listener) throws IOException, SQLException {
+        return submit(sourceFile, problemId, options, timeout, listener, false, call -> call.call(serverHost, serverPort, () -> {}));
+    }
+
+    /**
+     * Submits to whichever node of the cluster is least loaded, failing over when a node refuses the connection,
+     * and retrying and hedging as the cluster is configured to.
+     */
+    public EvaluationResult submit(String sourceFile, int problemId, JudgeOptions options, JudgeCluster cluster, int timeout, ResponseListener listener) throws IOException, SQLException {
+        return submit(sourceFile, problemId, options, timeout, listener, cluster.isHedging(), cluster::executeHedged);
+    }
+
+    private EvaluationResult submit(String sourceFile, int problemId, JudgeOptions options, int timeout, ResponseListener listener, boolean hedged, Dispatcher dispatcher) throws IOException, SQLException {
+        ProblemData problemData = databaseService.getProblemFromDatabase(problemId, dbConfig);
+        ConfigPayload jsonConfig = JsonConfigBuilder.cachedConfig(problemData, options, false, 0);
+        File source = new File(sourceFile);
+        SubmissionDeadlines deadlines = adaptiveDeadlines
+                ? SubmissionDeadlines.derive(problemData.timeLimit(), problemData.examples().size(), source.length() + jsonConfig.length())
+                : SubmissionDeadlines.fixed(timeout);
+        ResultStore store = resultStore;
+        ResultStore.Mode mode = dedupMode;
+        if (store == null || mode == ResultStore.Mode.OFF) {
+            // nothing to look up or join: the source is hashed while it is uploaded
+            return dispatch(new Submission(source, jsonConfig), deadlines, listener, hedged, dispatcher);
+        }
+        String sourceHash = JudgeConnection.hashFile(source);
+        String configHash = jsonConfig.sha256();
+        EvaluationResult stored = store.get(sourceHash, configHash);
+        if (stored != null && mode == ResultStore.Mode.TRUST) {
+            CodingClient.log("Reusing stored result for " + source.getName() + " (" + sourceHash.substring(0, 12) + ")");
+            return stored;
+        }
+        String key = sourceHash + ":" + configHash;
+        CompletableFuture<EvaluationResult> pending = new CompletableFuture<>();
+        CompletableFuture<EvaluationResult> running = inFlight.putIfAbsent(key, pending);
+        if (running != null) {
+            CodingClient.log("Joining in-flight submission of " + source.getName() + " (" + sourceHash.substring(0, 12) + ")");
+            EvaluationResult result = await(running);
+            new ResultAccumulator(resultMapping, listener).replay(result);
+            return result;
+        }
+        Submission submission = new Submission(source, jsonConfig, sourceHash);
+        EvaluationResult result;
+        try {
+            result = dispatch(submission, deadlines, listener, hedged, dispatcher);
+            pending.complete(result);
+        } catch (IOException | RuntimeException e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, pending);
+        }
+        if (stored != null && !sameVerdicts(stored, result)) {
+            CodingClient.log("Result changed for " + source.getName() + " on problem " + problemId + ": was AC " + stored.accepted() + "/" + stored.totalTests() + ", now AC " + result.accepted() + "/" + result.totalTests());
+        }
+        if (isStorable(result)) {
+            store.put(sourceHash, configHash, result);
+        }
+        return result;
+    }
+
+    /**
+     * Streams checkpoints to the listener as they arrive, and the cluster does not retry an attempt once it
+     * has; when several attempts may run at once (a hedging cluster) only the winner's checkpoints are
+     * reported instead, once it has finished.
+     */
+    private EvaluationResult dispatch(Submission submission, SubmissionDeadlines deadlines, ResponseListener listener, boolean hedged, Dispatcher dispatcher) throws IOException {
+        EvaluationResult result = dispatcher.dispatch((host, port, responded) -> networkService.sendAndStream(submission, host, port, deadlines, progress -> {}, resultMapping, (testCase, totals) -> {
+            if (totals.totalTests() == 1) {
+                responded.run();
+            }
+            if (listener != null && !hedged) {
+                listener.onTestCase(testCase, totals);
+            }
+        }));
+        if (listener != null && hedged) {
+            new ResultAccumulator(resultMapping, listener).replay(result);
+        }
+        return result;
+    }
+
+    private static EvaluationResult await(CompletableFuture<EvaluationResult> running) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for an identical submission");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static boolean sameVerdicts(EvaluationResult a, EvaluationResult b) {
+        if (a.totalTests() != b.totalTests() || a.accepted() != b.accepted()) {
+            return false;
+        }
+        for (int i = 0; i < a.testResults().size(); i++) {
+            if (!a.testResults().get(i).resultText().equals(b.testResults().get(i).resultText())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Empty results and system errors are judge-side failures, not verdicts, so they are never replayed.
+     */
+    private boolean isStorable(EvaluationResult result) {
+        String systemError = resultMapping.get(5);
+        return result.totalTests() > 0 && result.testResults().stream().noneMatch(testCase -> testCase.resultText().equals(systemError));
+    }
+
+    @FunctionalInterface
+    private interface Dispatcher {
+        EvaluationResult dispatch(JudgeCluster.HedgedJudgeCall<EvaluationResult> call) throws IOException;
+    }
+
+    public DatabaseService getDatabaseService() { return databaseService; }
+    public NetworkService getNetworkService() { return networkService; }
+    public DatabaseConfig getDbConfig() { return dbConfig; }
+}
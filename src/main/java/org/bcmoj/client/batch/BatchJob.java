@@ -0,0 +1,6 @@
+package org.bcmoj.client.batch;
+
+import java.nio.file.Path;
+
+public record BatchJob(Path source, int problemId) {
+}
@@ -0,0 +1,158 @@
+package org.bcmoj.client.batch;
+
+import org.bcmoj.client.JudgeOptions;
+import org.bcmoj.client.ResultStore;
+import org.bcmoj.client.SubmissionService;
+import org.bcmoj.client.db.DatabaseConfig;
+import org.bcmoj.client.db.DatabaseService;
+import org.bcmoj.client.metrics.PipelineMetrics;
+import org.bcmoj.client.net.JudgeCluster;
+import org.bcmoj.client.net.NetworkService;
+import org.bcmoj.client.net.ResponseProcessor;
+import org.bcmoj.client.net.RetryPolicy;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Headless entry point: {@code BatchMain <manifest|dir> [options]}.
+ */
+public class BatchMain {
+    private static final String USAGE = """
+            Usage: BatchMain <manifest file | source dir> [options]
+              --server host:port      judge server, repeatable (default localhost:12345)
+              --db-host HOST          (default localhost)
+              --db-port PORT          (default 3306)
+              --db-user USER          (default root)
+              --db-pass PASS          (default password)
+              --db-name NAME          (default bcmoj)
+              --db-pool N             max pooled database connections (default 10)
+              --concurrency N         worker threads (default 16)
+              --per-server N          max in-flight submissions per server (default 4)
+              --timeout MS            response timeout (default 200000)
+              --adaptive-timeouts     per-phase deadlines from each problem's time limit and checkpoints instead of --timeout
+              --retries N             retry unreachable judges and dropped connections up to N times (default 0)
+              --hedge                 also send to a second judge when the first is slower than p95 to answer
+              --security --o2 --new-format
+              --compare N             compare mode 1-4 (default 1)
+              --keep-alive            reuse judge connections
+              --compress LEVEL        negotiate deflate compression (level 1-9) with the judge
+              --test-data-refs        send checkpoints as hashes; the judge fetches test data it lacks
+              --result-store DIR      keep judged results in DIR, keyed by source and config hash
+              --dedup MODE            off | trust | verify (default trust when --result-store is set)
+              --report FILE           write the JSON report to FILE
+              --metrics FILE          write per-phase latency histograms as JSON to FILE
+            """;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+        Path input = Path.of(args[0]);
+        List<String> servers = new ArrayList<>();
+        String dbHost = "localhost", dbUser = "root", dbPass = "password", dbName = "bcmoj";
+        int dbPort = 3306, dbPool = DatabaseConfig.DEFAULT_MAX_POOL_SIZE, concurrency = 16, perServer = 4, timeout = 200000, compareMode = 1, retries = 0;
+        boolean securityCheck = false, enableO2 = false, useNewFormat = false, keepAlive = false, testDataRefs = false, adaptiveTimeouts = false, hedge = false;
+        Integer compressionLevel = null;
+        Path report = null;
+        Path metrics = null;
+        Path resultStore = null;
+        ResultStore.Mode dedupMode = null;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--server" -> servers.add(args[++i]);
+                case "--db-host" -> dbHost = args[++i];
+                case "--db-port" -> dbPort = Integer.parseInt(args[++i]);
+                case "--db-user" -> dbUser = args[++i];
+                case "--db-pass" -> dbPass = args[++i];
+                case "--db-name" -> dbName = args[++i];
+                case "--db-pool" -> dbPool = Integer.parseInt(args[++i]);
+                case "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                case "--per-server" -> perServer = Integer.parseInt(args[++i]);
+                case "--timeout" -> timeout = Integer.parseInt(args[++i]);
+                case "--adaptive-timeouts" -> adaptiveTimeouts = true;
+                case "--retries" -> retries = Integer.parseInt(args[++i]);
+                case "--hedge" -> hedge = true;
+                case "--compare" -> compareMode = Integer.parseInt(args[++i]);
+                case "--security" -> securityCheck = true;
+                case "--o2" -> enableO2 = true;
+                case "--new-format" -> useNewFormat = true;
+                case "--keep-alive" -> keepAlive = true;
+                case "--compress" -> compressionLevel = Integer.parseInt(args[++i]);
+                case "--test-data-refs" -> testDataRefs = true;
+                case "--report" -> report = Path.of(args[++i]);
+                case "--metrics" -> metrics = Path.of(args[++i]);
+                case "--result-store" -> resultStore = Path.of(args[++i]);
+                case "--dedup" -> dedupMode = parseDedupMode(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.err.print(USAGE);
+                    System.exit(2);
+                }
+            }
+        }
+        if (dedupMode != null && resultStore == null) {
+            System.err.println("--dedup requires --result-store");
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+        if (servers.isEmpty()) {
+            servers.add("localhost:12345");
+        }
+
+        List<BatchJob> jobs = BatchManifest.load(input);
+        System.out.println("Loaded " + jobs.size() + " jobs from " + input);
+        NetworkService networkService = new NetworkService();
+        networkService.setKeepAlive(keepAlive);
+        networkService.setCompressionLevel(compressionLevel);
+        networkService.setTestDataRefs(testDataRefs);
+        DatabaseConfig dbConfig = new DatabaseConfig(dbHost, dbPort, dbUser, dbPass, dbName, DatabaseConfig.DEFAULT_MIN_POOL_SIZE, dbPool, DatabaseConfig.DEFAULT_LEAK_DETECTION_MILLIS);
+        DatabaseService databaseService = new DatabaseService();
+        SubmissionService submissionService = new SubmissionService(databaseService, networkService, dbConfig, ResponseProcessor.DEFAULT_RESULT_MAPPING);
+        submissionService.setAdaptiveDeadlines(adaptiveTimeouts);
+        if (resultStore != null) {
+            submissionService.setResultStore(new ResultStore(resultStore), dedupMode != null ? dedupMode : ResultStore.Mode.TRUST);
+        }
+        JudgeOptions options = new JudgeOptions(securityCheck, enableO2, compareMode, useNewFormat, testDataRefs);
+
+        JudgeCluster cluster = new JudgeCluster(networkService, JudgeCluster.Endpoint.parseList(String.join(",", servers), 12345), perServer);
+        cluster.setRetryPolicy(RetryPolicy.retries(retries));
+        cluster.setHedging(hedge);
+
+        BatchReport result = new BatchRunner(submissionService, cluster, concurrency, timeout, options).run(jobs);
+        System.out.println(result.summary());
+        cluster.stats().forEach(stats -> System.out.println("Judge " + stats));
+        if (hedge) {
+            System.out.println("Hedged requests: " + cluster.getHedgesSent() + " sent, " + cluster.getHedgeWins() + " won");
+        }
+        cluster.close();
+        if (report != null) {
+            result.writeJson(report);
+            System.out.println("Report written to " + report);
+        }
+        PipelineMetrics.get().snapshot().phases().forEach(phase -> System.out.println("Latency " + phase));
+        if (metrics != null) {
+            PipelineMetrics.get().writeJson(metrics);
+            System.out.println("Metrics written to " + metrics);
+        }
+        System.out.println("Database pool: " + databaseService.poolMetrics());
+        System.out.println("Problem cache: " + databaseService.getProblemCache().stats());
+        databaseService.close();
+        networkService.getConnectionPool().close();
+        System.exit(result.failed() == 0 ? 0 : 1);
+    }
+
+    private static ResultStore.Mode parseDedupMode(String value) {
+        for (ResultStore.Mode mode : ResultStore.Mode.values()) {
+            if (mode.name().equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        System.err.println("Unknown dedup mode: " + value);
+        System.err.print(USAGE);
+        System.exit(2);
+        return null;
+    }
+}
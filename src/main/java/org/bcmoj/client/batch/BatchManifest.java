@@ -0,0 +1,76 @@
+package org.bcmoj.client.batch;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Reads (source, problemId) pairs either from a manifest file with one "source problemId" pair per line,
+ * or from a directory laid out as {@code <problemId>/*.cpp} or {@code <problemId>_anything.cpp}.
+ */
+public class BatchManifest {
+    private static final Pattern SOURCE_NAME = Pattern.compile("(\\d+)(?:[_\\-.].*)?\\.(cpp|cc|cxx)");
+    private static final Pattern PROBLEM_DIR = Pattern.compile("\\d+");
+
+    public static List<BatchJob> load(Path path) throws IOException {
+        return Files.isDirectory(path) ? fromDirectory(path) : fromManifest(path);
+    }
+
+    public static List<BatchJob> fromManifest(Path manifest) throws IOException {
+        List<BatchJob> jobs = new ArrayList<>();
+        Path baseDir = manifest.toAbsolutePath().getParent();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(manifest)) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int split = line.lastIndexOf(' ');
+            if (split < 0) {
+                split = line.lastIndexOf('\t');
+            }
+            if (split < 0) {
+                throw new IOException("Invalid manifest line " + lineNumber + ": " + line);
+            }
+            try {
+                int problemId = Integer.parseInt(line.substring(split + 1).trim());
+                jobs.add(new BatchJob(baseDir.resolve(line.substring(0, split).trim()), problemId));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid problem ID on manifest line " + lineNumber + ": " + line);
+            }
+        }
+        return jobs;
+    }
+
+    public static List<BatchJob> fromDirectory(Path dir) throws IOException {
+        List<BatchJob> jobs = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(dir, 2)) {
+            for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                if (!Files.isRegularFile(file)) {
+                    continue;
+                }
+                String name = file.getFileName().toString();
+                Path parent = file.getParent();
+                if (!parent.equals(dir) && PROBLEM_DIR.matcher(parent.getFileName().toString()).matches() && isSource(name)) {
+                    jobs.add(new BatchJob(file, Integer.parseInt(parent.getFileName().toString())));
+                    continue;
+                }
+                Matcher matcher = SOURCE_NAME.matcher(name);
+                if (parent.equals(dir) && matcher.matches()) {
+                    jobs.add(new BatchJob(file, Integer.parseInt(matcher.group(1))));
+                }
+            }
+        }
+        return jobs;
+    }
+
+    private static boolean isSource(String name) {
+        return name.endsWith(".cpp") || name.endsWith(".cc") || name.endsWith(".cxx");
+    }
+}
@@ -0,0 +1,36 @@
+package org.bcmoj.client.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bcmoj.client.EvaluationResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+public record BatchReport(List<Entry> entries, int succeeded, int failed, int fullyAccepted, long elapsedMillis) {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    public static BatchReport of(List<Entry> entries, long elapsedMillis) {
+        int failed = 0;
+        int fullyAccepted = 0;
+        for (Entry entry : entries) {
+            if (entry.result() == null) {
+                failed++;
+            } else if (entry.result().totalTests() > 0 && entry.result().accepted() == entry.result().totalTests()) {
+                fullyAccepted++;
+            }
+        }
+        return new BatchReport(entries, entries.size() - failed, failed, fullyAccepted, elapsedMillis);
+    }
+
+    public void writeJson(Path path) throws IOException {
+        mapper.writerWithDefaultPrettyPrinter().writeValue(path.toFile(), this);
+    }
+
+    public String summary() {
+        return String.format("Jobs: %d, OK: %d, Failed: %d, All AC: %d, Elapsed: %dms", entries.size(), succeeded, failed, fullyAccepted, elapsedMillis);
+    }
+
+    public record Entry(String source, int problemId, String server, EvaluationResult result, String error, long elapsedMillis) {
+    }
+}
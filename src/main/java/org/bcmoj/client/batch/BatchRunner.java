@@ -0,0 +1,103 @@
+package org.bcmoj.client.batch;
+
+import org.bcmoj.client.CodingClient;
+import org.bcmoj.client.EvaluationResult;
+import org.bcmoj.client.JudgeOptions;
+import org.bcmoj.client.SubmissionService;
+import org.bcmoj.client.net.JudgeCluster;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans batch jobs out over a bounded executor. The judge cluster picks a node for every job and caps the
+ * number of in-flight submissions per node.
+ */
+public class BatchRunner {
+    private final SubmissionService submissionService;
+    private final JudgeCluster cluster;
+    private final int concurrency;
+    private final int timeout;
+    private final JudgeOptions options;
+
+    public BatchRunner(SubmissionService submissionService, JudgeCluster cluster, int concurrency, int timeout, JudgeOptions options) {
+        this.submissionService = submissionService;
+        this.cluster = cluster;
+        this.concurrency = concurrency;
+        this.timeout = timeout;
+        this.options = options;
+    }
+
+    public BatchReport run(List<BatchJob> jobs) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        prefetchProblems(jobs);
+        AtomicInteger completed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread t = new Thread(r, "batch-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<BatchReport.Entry>> futures = new ArrayList<>(jobs.size());
+            for (BatchJob job : jobs) {
+                futures.add(executor.submit(() -> {
+                    BatchReport.Entry entry = runJob(job);
+                    CodingClient.log(String.format("[%d/%d] %s -> %d: %s", completed.incrementAndGet(), jobs.size(), job.source().getFileName(), job.problemId(), describe(entry)));
+                    return entry;
+                }));
+            }
+            List<BatchReport.Entry> entries = new ArrayList<>(jobs.size());
+            for (Future<BatchReport.Entry> future : futures) {
+                try {
+                    entries.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Batch worker failed", e.getCause());
+                }
+            }
+            return BatchReport.of(entries, System.currentTimeMillis() - startTime);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void prefetchProblems(List<BatchJob> jobs) {
+        Set<Integer> problemIds = new LinkedHashSet<>();
+        for (BatchJob job : jobs) {
+            problemIds.add(job.problemId());
+        }
+        try {
+            submissionService.getDatabaseService().getProblemsFromDatabase(problemIds, submissionService.getDbConfig());
+        } catch (SQLException e) {
+            CodingClient.log("Prefetch failed, problems will be loaded per job: " + e.getMessage());
+        }
+    }
+
+    private BatchReport.Entry runJob(BatchJob job) {
+        long startTime = System.currentTimeMillis();
+        // jobs answered without the judge (a stored or shared result) must not report the previous job's server
+        JudgeCluster.clearLastEndpoint();
+        try {
+            EvaluationResult result = submissionService.submit(job.source().toString(), job.problemId(), options, cluster, timeout, null);
+            return new BatchReport.Entry(job.source().toString(), job.problemId(), server(), result, null, System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            return new BatchReport.Entry(job.source().toString(), job.problemId(), server(), null, e.toString(), System.currentTimeMillis() - startTime);
+        }
+    }
+
+    private static String server() {
+        JudgeCluster.Endpoint endpoint = JudgeCluster.lastEndpoint();
+        return endpoint != null ? endpoint.toString() : null;
+    }
+
+    private static String describe(BatchReport.Entry entry) {
+        if (entry.result() == null) {
+            return "<Error> " + entry.error();
+        }
+        return String.format("AC %d/%d, %dms", entry.result().accepted(), entry.result().totalTests(), entry.elapsedMillis());
+    }
+}
@@ -1,23 +1,56 @@
 package org.bcmoj.client.db;
 
+import java.util.Objects;
+
 public class DatabaseConfig {
+    public static final int DEFAULT_MIN_POOL_SIZE = 1;
+    public static final int DEFAULT_MAX_POOL_SIZE = 10;
+    public static final long DEFAULT_LEAK_DETECTION_MILLIS = 30_000;
+
     private final String host;
     private final int port;
     private final String username;
     private final String password;
     private final String database;
+    private final int minPoolSize;
+    private final int maxPoolSize;
+    private final long leakDetectionMillis;
 
     public DatabaseConfig(String host, int port, String username, String password, String database) {
+        this(host, port, username, password, database, DEFAULT_MIN_POOL_SIZE, DEFAULT_MAX_POOL_SIZE, DEFAULT_LEAK_DETECTION_MILLIS);
+    }
+
+    public DatabaseConfig(String host, int port, String username, String password, String database, int minPoolSize, int maxPoolSize, long leakDetectionMillis) {
         this.host = host;
         this.port = port;
         this.username = username;
         this.password = password;
         this.database = database;
+        this.minPoolSize = minPoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.leakDetectionMillis = leakDetectionMillis;
     }
 
     public String getUsername() { return username; }
     public String getPassword() { return password; }
+    public int getMinPoolSize() { return minPoolSize; }
+    public int getMaxPoolSize() { return maxPoolSize; }
+    public long getLeakDetectionMillis() { return leakDetectionMillis; }
     public String getJdbcUrl() {
         return String.format("jdbc:mysql://%s:%d/%s", host, port, database);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DatabaseConfig that)) return false;
+        return port == that.port && minPoolSize == that.minPoolSize && maxPoolSize == that.maxPoolSize
+                && leakDetectionMillis == that.leakDetectionMillis && host.equals(that.host) && username.equals(that.username)
+                && password.equals(that.password) && database.equals(that.database);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(host, port, username, password, database, minPoolSize, maxPoolSize, leakDetectionMillis);
+    }
 }
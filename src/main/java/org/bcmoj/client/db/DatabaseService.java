@@ -1,66 +1,243 @@
 package org.bcmoj.client.db;
 
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.pool.HikariPool;
+import org.bcmoj.client.JsonConfigBuilder;
 import org.bcmoj.client.ProblemData;
+import org.bcmoj.client.metrics.Phase;
+import org.bcmoj.client.metrics.PipelineMetrics;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import org.bcmoj.client.CodingClient;
 
-public class DatabaseService {
+public class DatabaseService implements AutoCloseable {
+    private static final int BULK_CHUNK_SIZE = 100;
+
+    private final ProblemCache problemCache;
+    private volatile String versionColumn = "updated_at";
+    private String cachedJdbcUrl;
+    private HikariDataSource dataSource;
+    private DatabaseConfig dataSourceConfig;
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public DatabaseService() {
+        this(new ProblemCache());
+    }
+
+    public DatabaseService(ProblemCache problemCache) {
+        this.problemCache = problemCache;
+    }
+
+    public ProblemCache getProblemCache() {
+        return problemCache;
+    }
+
+    /**
+     * Column of the problems table used to revalidate stale cache entries; null reloads them in full instead.
+     */
+    public void setVersionColumn(String versionColumn) {
+        this.versionColumn = versionColumn;
+    }
 
     public ProblemData getProblemFromDatabase(int problemId, DatabaseConfig config) throws SQLException {
-        try (Connection conn = DriverManager.getConnection(config.getJdbcUrl(), config.getUsername(), config.getPassword())) {
-            Map<String, Object> problem = getProblemInfo(conn, problemId);
-            if (problem.isEmpty()) {
-                throw new SQLException("ProblemID " + problemId + " not exist");
+        long startTime = System.nanoTime();
+        try {
+            return fetchProblem(problemId, config);
+        } finally {
+            PipelineMetrics.get().recordSince(Phase.DB_FETCH, startTime);
+        }
+    }
+
+    private ProblemData fetchProblem(int problemId, DatabaseConfig config) throws SQLException {
+        checkCacheTarget(config);
+        ProblemCache.Entry cached = problemCache.lookup(problemId);
+        if (cached != null && problemCache.isFresh(cached)) {
+            problemCache.recordHit();
+            return cached.data();
+        }
+        try (Connection conn = getConnection(config)) {
+            if (cached != null && cached.data().version() != 0 && versionColumn != null) {
+                long version = getProblemVersion(conn, problemId);
+                if (cached.data().version() == version) {
+                    problemCache.recordHit();
+                    problemCache.revalidated(problemId, cached);
+                    return cached.data();
+                }
+            }
+            problemCache.recordMiss();
+            ProblemData problemData = loadProblem(conn, problemId);
+            problemCache.put(problemId, problemData);
+            return problemData;
+        }
+    }
+
+    /**
+     * Loads many problems with chunked IN-list queries, skipping problems that are still fresh in the cache, and
+     * warms the cache with the result. Unknown problems and problems without examples are left out of the map.
+     */
+    public Map<Integer, ProblemData> getProblemsFromDatabase(Collection<Integer> problemIds, DatabaseConfig config) throws SQLException {
+        checkCacheTarget(config);
+        Map<Integer, ProblemData> problems = new LinkedHashMap<>();
+        List<Integer> toLoad = new ArrayList<>();
+        for (int problemId : new LinkedHashSet<>(problemIds)) {
+            ProblemCache.Entry cached = problemCache.lookup(problemId);
+            if (cached != null && problemCache.isFresh(cached)) {
+                problemCache.recordHit();
+                problems.put(problemId, cached.data());
+            } else {
+                toLoad.add(problemId);
             }
-            List<Map<String, String>> examples = getExamples(conn, problemId);
-            if (examples.isEmpty()) {
-                throw new SQLException("NO Examples");
+        }
+        if (toLoad.isEmpty()) {
+            return problems;
+        }
+        try (Connection conn = getConnection(config)) {
+            for (int start = 0; start < toLoad.size(); start += BULK_CHUNK_SIZE) {
+                List<Integer> chunk = toLoad.subList(start, Math.min(start + BULK_CHUNK_SIZE, toLoad.size()));
+                Map<Integer, ProblemData> loaded = loadProblems(conn, chunk);
+                for (int problemId : chunk) {
+                    ProblemData problemData = loaded.get(problemId);
+                    problemCache.recordMiss();
+                    if (problemData == null) {
+                        CodingClient.log("Prefetch: problem " + problemId + " not exist or has no examples");
+                        continue;
+                    }
+                    problemCache.put(problemId, problemData);
+                    problems.put(problemId, problemData);
+                }
             }
-            return new ProblemData(problem, examples);
         }
+        CodingClient.log("Prefetched " + toLoad.size() + " problems in " + ((toLoad.size() + BULK_CHUNK_SIZE - 1) / BULK_CHUNK_SIZE) + " queries");
+        return problems;
     }
 
-    private Map<String, Object> getProblemInfo(Connection conn, int problemId) throws SQLException {
-        String sql = "SELECT * FROM problems WHERE problem_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, problemId);
+    private ProblemData loadProblem(Connection conn, int problemId) throws SQLException {
+        ProblemData problemData = loadProblems(conn, List.of(problemId)).get(problemId);
+        if (problemData == null) {
+            throw new SQLException("ProblemID " + problemId + " not exist or has no examples");
+        }
+        CodingClient.log("Fetched problem: " + problemId);
+        return problemData;
+    }
+
+    /**
+     * Loads problems and their examples in one round trip, selecting only the columns the judge config needs.
+     * Multi-ID lookups are padded to BULK_CHUNK_SIZE placeholders so every chunk reuses one prepared statement,
+     * and rows are streamed from the server instead of being buffered in full.
+     */
+    private Map<Integer, ProblemData> loadProblems(Connection conn, List<Integer> problemIds) throws SQLException {
+        String column = versionColumn;
+        int placeholders = problemIds.size() == 1 ? 1 : BULK_CHUNK_SIZE;
+        String sql = "SELECT p.problem_id, p.title, p.time_limit, p.mem_limit, " + (column != null ? "p." + column : "NULL") + ", e.input, e.output "
+                + "FROM problems p LEFT JOIN examples e ON e.problem_id = p.problem_id "
+                + (placeholders == 1 ? "WHERE p.problem_id = ? " : "WHERE p.problem_id IN (" + String.join(",", Collections.nCopies(placeholders, "?")) + ") ")
+                + "ORDER BY p.problem_id, e.example_id";
+        Map<Integer, ProblemData> problems = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            for (int i = 0; i < placeholders; i++) {
+                stmt.setInt(i + 1, problemIds.get(Math.min(i, problemIds.size() - 1)));
+            }
+            if (placeholders > 1) {
+                stmt.setFetchSize(Integer.MIN_VALUE);
+            }
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    Map<String, Object> problem = new HashMap<>();
-                    ResultSetMetaData metaData = rs.getMetaData();
-                    for (int i = 1; i <= metaData.getColumnCount(); i++) {
-                        problem.put(metaData.getColumnName(i), rs.getObject(i));
+                boolean hasRow = rs.next();
+                while (hasRow) {
+                    int problemId = rs.getInt(1);
+                    String title = rs.getString(2);
+                    int timeLimit = rs.getInt(3);
+                    int memLimit = rs.getInt(4);
+                    long version = toVersion(rs.getObject(5));
+                    List<ProblemData.Example> examples = new ArrayList<>();
+                    do {
+                        String input = rs.getString(6);
+                        String output = rs.getString(7);
+                        if (input != null || output != null) {
+                            examples.add(new ProblemData.Example(input, output));
+                        }
+                        hasRow = rs.next();
+                    } while (hasRow && rs.getInt(1) == problemId);
+                    if (!examples.isEmpty()) {
+                        problems.put(problemId, new ProblemData(problemId, title, timeLimit, memLimit, version, List.copyOf(examples)));
                     }
-                    CodingClient.log("Fetched problem: " + problemId);
-                    return problem;
                 }
             }
+        } catch (SQLSyntaxErrorException e) {
+            if (column == null) {
+                throw e;
+            }
+            disableVersionColumn(column);
+            return loadProblems(conn, problemIds);
+        }
+        return problems;
+    }
+
+    /**
+     * Loads the description on demand; it can be large and the judge config never needs it.
+     */
+    public String getProblemDescription(int problemId, DatabaseConfig config) throws SQLException {
+        try (Connection conn = getConnection(config); PreparedStatement stmt = conn.prepareStatement("SELECT description FROM problems WHERE problem_id = ?")) {
+            stmt.setInt(1, problemId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("ProblemID " + problemId + " not exist");
+                }
+                return rs.getString(1);
+            }
         }
-        return new HashMap<>();
     }
 
-    private List<Map<String, String>> getExamples(Connection conn, int problemId) throws SQLException {
-        String sql = "SELECT input, output FROM examples WHERE problem_id = ? ORDER BY example_id";
-        List<Map<String, String>> examples = new ArrayList<>();
+    private long getProblemVersion(Connection conn, int problemId) throws SQLException {
+        String column = versionColumn;
+        String sql = "SELECT " + column + " FROM problems WHERE problem_id = ?";
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, problemId);
             try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Map<String, String> example = new HashMap<>();
-                    example.put("input", rs.getString("input"));
-                    example.put("output", rs.getString("output"));
-                    examples.add(example);
-                }
+                return rs.next() ? toVersion(rs.getObject(1)) : 0;
             }
+        } catch (SQLSyntaxErrorException e) {
+            disableVersionColumn(column);
+            return 0;
+        }
+    }
+
+    private void disableVersionColumn(String column) {
+        CodingClient.log("Problem cache: column '" + column + "' unavailable, falling back to full reloads");
+        versionColumn = null;
+    }
+
+    private static long toVersion(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof java.util.Date date) {
+            return date.getTime();
+        } else if (value instanceof java.time.LocalDateTime dateTime) {
+            return Timestamp.valueOf(dateTime).getTime();
+        } else if (value instanceof Number number) {
+            return number.longValue();
+        }
+        return value.toString().hashCode();
+    }
+
+    private synchronized void checkCacheTarget(DatabaseConfig config) {
+        String jdbcUrl = config.getJdbcUrl();
+        if (!jdbcUrl.equals(cachedJdbcUrl)) {
+            problemCache.invalidateAll();
+            JsonConfigBuilder.getConfigCache().invalidateAll();
+            cachedJdbcUrl = jdbcUrl;
         }
-        return examples;
     }
+
     public void testConnection(DatabaseConfig config) throws SQLException {
         long startTime = System.currentTimeMillis();
-        try (Connection conn = DriverManager.getConnection(config.getJdbcUrl(), config.getUsername(), config.getPassword())) {
+        try (Connection conn = getConnection(config)) {
             DatabaseMetaData metaData = conn.getMetaData();
             long elapsed = System.currentTimeMillis() - startTime;
             CodingClient.log("Successfully connected to database '" + ", elapsed " + elapsed + "ms");
@@ -68,6 +245,8 @@ public class DatabaseService {
             CodingClient.log("Database Version: " + metaData.getDatabaseProductVersion());
             CodingClient.log("Driver Name: " + metaData.getDriverName());
             CodingClient.log("Driver Version: " + metaData.getDriverVersion());
+            CodingClient.log("Problem cache: " + problemCache.stats());
+            CodingClient.log("Connection pool: " + poolMetrics());
         } catch (SQLException e) {
             long elapsed = System.currentTimeMillis() - startTime;
             CodingClient.log("Failed to connect to database '" + ", elapsed " + elapsed + "ms");
@@ -75,4 +254,68 @@ public class DatabaseService {
             throw new SQLException(e);
         }
     }
+
+    private Connection getConnection(DatabaseConfig config) throws SQLException {
+        HikariDataSource ds = getDataSource(config);
+        long start = System.nanoTime();
+        Connection conn = ds.getConnection();
+        long waited = System.nanoTime() - start;
+        acquisitions.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        return conn;
+    }
+
+    private synchronized HikariDataSource getDataSource(DatabaseConfig config) throws SQLException {
+        if (dataSource != null && config.equals(dataSourceConfig)) {
+            return dataSource;
+        }
+        if (dataSource != null) {
+            dataSource.close();
+            dataSource = null;
+        }
+        HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setPoolName("bcmoj-db");
+        hikariConfig.setJdbcUrl(config.getJdbcUrl());
+        hikariConfig.setUsername(config.getUsername());
+        hikariConfig.setPassword(config.getPassword());
+        hikariConfig.setMinimumIdle(config.getMinPoolSize());
+        hikariConfig.setMaximumPoolSize(config.getMaxPoolSize());
+        hikariConfig.setConnectionTimeout(10_000);
+        hikariConfig.setValidationTimeout(3_000);
+        hikariConfig.setKeepaliveTime(120_000);
+        hikariConfig.setLeakDetectionThreshold(config.getLeakDetectionMillis());
+        // Connector/J: server-side prepared statements, cached per connection
+        hikariConfig.addDataSourceProperty("useServerPrepStmts", "true");
+        hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
+        hikariConfig.addDataSourceProperty("prepStmtCacheSize", "250");
+        hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        hikariConfig.addDataSourceProperty("useLocalSessionState", "true");
+        try {
+            dataSource = new HikariDataSource(hikariConfig);
+        } catch (HikariPool.PoolInitializationException e) {
+            throw e.getCause() instanceof SQLException sqlException ? sqlException : new SQLException(e.getMessage(), e);
+        }
+        dataSourceConfig = config;
+        return dataSource;
+    }
+
+    public synchronized PoolMetrics poolMetrics() {
+        long count = acquisitions.get();
+        double averageWait = count > 0 ? totalWaitNanos.get() / 1e6 / count : 0.0;
+        double maxWait = maxWaitNanos.get() / 1e6;
+        HikariPoolMXBean pool = dataSource != null ? dataSource.getHikariPoolMXBean() : null;
+        if (pool == null) {
+            return new PoolMetrics(0, 0, 0, 0, count, averageWait, maxWait);
+        }
+        return new PoolMetrics(pool.getActiveConnections(), pool.getIdleConnections(), pool.getTotalConnections(), pool.getThreadsAwaitingConnection(), count, averageWait, maxWait);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (dataSource != null) {
+            dataSource.close();
+            dataSource = null;
+        }
+    }
 }
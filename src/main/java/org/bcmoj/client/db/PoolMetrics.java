@@ -0,0 +1,8 @@
+package org.bcmoj.client.db;
+
+public record PoolMetrics(int active, int idle, int total, int waiting, long acquisitions, double averageWaitMillis, double maxWaitMillis) {
+    @Override
+    public String toString() {
+        return String.format("active=%d, idle=%d, total=%d, waiting=%d, acquisitions=%d, avgWait=%.2fms, maxWait=%.2fms", active, idle, total, waiting, acquisitions, averageWaitMillis, maxWaitMillis);
+    }
+}
@@ -0,0 +1,96 @@
+package org.bcmoj.client.db;
+
+import org.bcmoj.client.ProblemData;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded LRU cache of problems. Entries younger than the TTL are served directly; older ones are kept so
+ * the caller can revalidate them against the stored version instead of reloading them in full.
+ */
+public class ProblemCache {
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final long DEFAULT_TTL_MILLIS = 5 * 60_000;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Map<Integer, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ProblemCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    public ProblemCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                if (size() > ProblemCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached entry, fresh or stale, or null if the problem is not cached.
+     */
+    public synchronized Entry lookup(int problemId) {
+        return entries.get(problemId);
+    }
+
+    public boolean isFresh(Entry entry) {
+        return System.currentTimeMillis() - entry.loadedAt() < ttlMillis;
+    }
+
+    public synchronized void put(int problemId, ProblemData data) {
+        entries.put(problemId, new Entry(data, System.currentTimeMillis()));
+    }
+
+    /**
+     * Marks a stale entry as confirmed by a version check, restarting its TTL.
+     */
+    public synchronized void revalidated(int problemId, Entry entry) {
+        entries.put(problemId, new Entry(entry.data(), System.currentTimeMillis()));
+        revalidations.incrementAndGet();
+    }
+
+    public synchronized void invalidate(int problemId) {
+        entries.remove(problemId);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(hits.get(), misses.get(), revalidations.get(), evictions.get(), entries.size());
+    }
+
+    public record Entry(ProblemData data, long loadedAt) {
+    }
+
+    public record CacheStats(long hits, long misses, long revalidations, long evictions, int size) {
+        @Override
+        public String toString() {
+            return String.format("hits=%d, misses=%d, revalidations=%d, evictions=%d, size=%d", hits, misses, revalidations, evictions, size);
+        }
+    }
+}
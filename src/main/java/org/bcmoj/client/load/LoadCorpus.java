@@ -0,0 +1,90 @@
+package org.bcmoj.client.load;
+
+import org.bcmoj.client.JsonConfigBuilder;
+import org.bcmoj.client.JudgeOptions;
+import org.bcmoj.client.ProblemData;
+import org.bcmoj.client.batch.BatchJob;
+import org.bcmoj.client.db.DatabaseConfig;
+import org.bcmoj.client.db.DatabaseService;
+import org.bcmoj.client.net.ConfigPayload;
+import org.bcmoj.client.net.JudgeConnection;
+import org.bcmoj.client.net.Submission;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fixed set of submissions replayed by the load generator. Configs are built and sources hashed once up front,
+ * so the measured path is only the network round trip.
+ */
+public record LoadCorpus(List<Item> items) {
+    public LoadCorpus {
+        if (items.isEmpty()) {
+            throw new IllegalArgumentException("Load corpus is empty");
+        }
+        items = List.copyOf(items);
+    }
+
+    /**
+     * Builds the corpus from batch jobs, loading their problems from the database in bulk.
+     */
+    public static LoadCorpus fromJobs(List<BatchJob> jobs, DatabaseService databaseService, DatabaseConfig dbConfig, JudgeOptions options) throws IOException, SQLException {
+        Set<Integer> problemIds = new HashSet<>();
+        jobs.forEach(job -> problemIds.add(job.problemId()));
+        Map<Integer, ProblemData> problems = databaseService.getProblemsFromDatabase(problemIds, dbConfig);
+        List<Item> items = new ArrayList<>();
+        for (BatchJob job : jobs) {
+            ProblemData problemData = problems.get(job.problemId());
+            if (problemData == null) {
+                System.err.println("Skipping " + job.source() + ": problem " + job.problemId() + " not found");
+                continue;
+            }
+            items.add(item(job.source(), problemData, options));
+        }
+        return new LoadCorpus(items);
+    }
+
+    /**
+     * Builds the corpus without a database: every source is paired with a generated problem of the given number
+     * of small checkpoints. Meant for runs against the stub judge.
+     */
+    public static LoadCorpus synthetic(List<Path> sources, int checkpoints, JudgeOptions options) throws IOException {
+        List<ProblemData.Example> examples = new ArrayList<>();
+        for (int i = 1; i <= checkpoints; i++) {
+            examples.add(new ProblemData.Example(i + " " + i, String.valueOf(2 * i)));
+        }
+        ProblemData problemData = new ProblemData(0, "Synthetic", 1000, 262144, 0, examples);
+        List<Item> items = new ArrayList<>();
+        for (Path source : sources) {
+            items.add(item(source, problemData, options));
+        }
+        return new LoadCorpus(items);
+    }
+
+    private static Item item(Path source, ProblemData problemData, JudgeOptions options) throws IOException {
+        if (options.testDataRefs()) {
+            // referencing configs are tiny and come out of the config cache with their test data attached
+            Submission submission = new Submission(source.toFile(), JsonConfigBuilder.cachedConfig(problemData, options, false, 0), JudgeConnection.hashFile(source.toFile()));
+            return new Item(submission, problemData.examples().size());
+        }
+        ConfigPayload payload = JsonConfigBuilder.streamConfig(problemData, options, false, 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length());
+        payload.writeTo(out);
+        Submission submission = new Submission(source.toFile(), ConfigPayload.of(out.toByteArray()), JudgeConnection.hashFile(source.toFile()));
+        return new Item(submission, problemData.examples().size());
+    }
+
+    public Item get(long sequence) {
+        return items.get((int) (sequence % items.size()));
+    }
+
+    public record Item(Submission submission, int checkpoints) {
+    }
+}
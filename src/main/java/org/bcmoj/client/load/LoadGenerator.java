@@ -0,0 +1,318 @@
+package org.bcmoj.client.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.bcmoj.client.net.CheckpointTable;
+import org.bcmoj.client.net.JudgeCluster;
+import org.bcmoj.client.net.NetworkService;
+import org.bcmoj.client.net.ResponseProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Replays a corpus against the judge cluster, either open-loop at a target request rate or closed-loop with a
+ * fixed number of concurrent senders, and reports throughput, errors and latency per interval.
+ * <p>
+ * In rate mode every request has an intended start time on a fixed schedule and its latency is measured from
+ * there, so a judge that stalls cannot hide the requests it delayed (coordinated omission). In concurrency mode
+ * there is no schedule; samples are back-filled with the previous interval's median as the expected interval.
+ * Both modes ramp up linearly over the ramp-up period.
+ * <p>
+ * With {@link #setAsync} submissions go through NetworkService.sendAsync instead of one blocking sender thread
+ * each, so the number of outstanding requests is no longer bounded by threads.
+ */
+public class LoadGenerator {
+    private static final long SENDER_STACK_SIZE = 256 * 1024;
+
+    private final NetworkService networkService;
+    private final JudgeCluster cluster;
+    private final LoadCorpus corpus;
+    private final int timeout;
+    private double rate;
+    private int concurrency;
+    private long durationMillis = 60_000;
+    private long rampUpMillis;
+    private long reportIntervalMillis = 5_000;
+    private int maxInFlight = 10_000;
+    private boolean async;
+    private Consumer<LoadReport.Interval> intervalListener = interval -> {
+    };
+
+    private final Recorder corrected = new Recorder(3);
+    private final Recorder raw = new Recorder(3);
+    private final Histogram totalCorrected = new Histogram(3);
+    private final Histogram totalRaw = new Histogram(3);
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile long expectedIntervalMicros;
+    private long lastSent, lastCompleted, lastErrors, lastReportNanos, startNanos;
+
+    public LoadGenerator(NetworkService networkService, JudgeCluster cluster, LoadCorpus corpus, int timeout) {
+        this.networkService = networkService;
+        this.cluster = cluster;
+        this.corpus = corpus;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Open-loop mode: requests per second once ramped up.
+     */
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * Closed-loop mode: number of senders that each submit again as soon as their previous request finishes.
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public void setRampUpMillis(long rampUpMillis) {
+        this.rampUpMillis = rampUpMillis;
+    }
+
+    public void setReportIntervalMillis(long reportIntervalMillis) {
+        this.reportIntervalMillis = reportIntervalMillis;
+    }
+
+    /**
+     * Caps outstanding requests in rate mode; once reached, sending waits but the schedule keeps running.
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public void setIntervalListener(Consumer<LoadReport.Interval> intervalListener) {
+        this.intervalListener = intervalListener;
+    }
+
+    public LoadReport run() throws InterruptedException {
+        if ((rate > 0) == (concurrency > 0)) {
+            throw new IllegalStateException("Set exactly one of rate or concurrency");
+        }
+        ExecutorService senders = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(null, r, "load-sender", SENDER_STACK_SIZE);
+            t.setDaemon(true);
+            return t;
+        });
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "load-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        List<LoadReport.Interval> intervals = new ArrayList<>();
+        startNanos = System.nanoTime();
+        lastReportNanos = startNanos;
+        reporter.scheduleAtFixedRate(() -> {
+            LoadReport.Interval interval = takeInterval();
+            synchronized (intervals) {
+                intervals.add(interval);
+            }
+            intervalListener.accept(interval);
+        }, reportIntervalMillis, reportIntervalMillis, TimeUnit.MILLISECONDS);
+        try {
+            if (rate > 0) {
+                runOpenLoop(senders);
+            } else {
+                runClosedLoop(senders);
+            }
+            senders.shutdown();
+            senders.awaitTermination(timeout + 10_000L, TimeUnit.MILLISECONDS);
+            awaitAsyncDrain(timeout + 10_000L);
+        } finally {
+            reporter.shutdownNow();
+            senders.shutdownNow();
+        }
+        LoadReport.Interval last = takeInterval();
+        synchronized (intervals) {
+            if (last.sent() > 0 || last.completed() > 0) {
+                intervals.add(last);
+                intervalListener.accept(last);
+            }
+            return new LoadReport(List.copyOf(intervals), summarize(elapsedSeconds(System.nanoTime()), sent.get(), completed.get(), errors.get(), System.nanoTime() - startNanos, totalCorrected, totalRaw));
+        }
+    }
+
+    private void runOpenLoop(ExecutorService senders) throws InterruptedException {
+        Semaphore permits = new Semaphore(maxInFlight);
+        long durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        for (long i = 0; ; i++) {
+            long intended = startNanos + intendedOffsetNanos(i);
+            if (intended - startNanos >= durationNanos) {
+                return;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            permits.acquire();
+            if (async) {
+                sendAsync(intended, 0).whenComplete((result, failure) -> permits.release());
+                continue;
+            }
+            senders.execute(() -> {
+                try {
+                    send(intended, 0);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * Offset of request i from the start, with the rate ramping linearly from zero to the target over the
+     * ramp-up period: n(t) = rate * t^2 / (2 * rampUp) until then, rate * (t - rampUp / 2) after.
+     */
+    private long intendedOffsetNanos(long i) {
+        double rampUpSeconds = rampUpMillis / 1000.0;
+        double seconds;
+        if (rampUpSeconds > 0 && i < rate * rampUpSeconds / 2) {
+            seconds = Math.sqrt(2 * rampUpSeconds * i / rate);
+        } else {
+            seconds = rampUpSeconds / 2 + i / rate;
+        }
+        return (long) (seconds * 1e9);
+    }
+
+    private void runClosedLoop(ExecutorService senders) throws InterruptedException {
+        long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int k = 0; k < concurrency; k++) {
+            long startAt = startNanos + TimeUnit.MILLISECONDS.toNanos(rampUpMillis) * k / concurrency;
+            if (async) {
+                LockSupport.parkNanos(startAt - System.nanoTime());
+                sendAsyncUntil(deadline, done);
+                continue;
+            }
+            senders.execute(() -> {
+                try {
+                    LockSupport.parkNanos(startAt - System.nanoTime());
+                    while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+                        send(System.nanoTime(), expectedIntervalMicros);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+    private void send(long intendedNanos, long expectedIntervalMicros) {
+        LoadCorpus.Item item = corpus.get(sequence.getAndIncrement());
+        inFlight.incrementAndGet();
+        sent.incrementAndGet();
+        long startTime = System.nanoTime();
+        boolean success = false;
+        try {
+            cluster.execute((host, port) -> networkService.sendAndCollect(item.submission(), host, port, timeout, progress -> {
+            }, new CheckpointTable(item.checkpoints())));
+            success = true;
+        } catch (Exception e) {
+            // counted as an error below
+        } finally {
+            finished(success, startTime, intendedNanos, expectedIntervalMicros);
+        }
+    }
+
+    private CompletableFuture<?> sendAsync(long intendedNanos, long expectedIntervalMicros) {
+        LoadCorpus.Item item = corpus.get(sequence.getAndIncrement());
+        inFlight.incrementAndGet();
+        sent.incrementAndGet();
+        long startTime = System.nanoTime();
+        return cluster.executeAsync((host, port) -> networkService.sendAsync(item.submission(), host, port, timeout, ResponseProcessor.DEFAULT_RESULT_MAPPING, null))
+                .whenComplete((result, failure) -> finished(failure == null, startTime, intendedNanos, expectedIntervalMicros));
+    }
+
+    /**
+     * Closed-loop sender without a thread: each completion sends the next request until the deadline.
+     */
+    private void sendAsyncUntil(long deadline, CountDownLatch done) {
+        if (System.nanoTime() >= deadline) {
+            done.countDown();
+            return;
+        }
+        sendAsync(System.nanoTime(), expectedIntervalMicros).whenCompleteAsync((result, failure) -> sendAsyncUntil(deadline, done));
+    }
+
+    private void awaitAsyncDrain(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    private void finished(boolean success, long startTime, long intendedNanos, long expectedIntervalMicros) {
+        long endTime = System.nanoTime();
+        if (success) {
+            completed.incrementAndGet();
+        } else {
+            errors.incrementAndGet();
+        }
+        inFlight.decrementAndGet();
+        raw.recordValue((endTime - startTime) / 1000);
+        if (expectedIntervalMicros > 0) {
+            corrected.recordValueWithExpectedInterval((endTime - intendedNanos) / 1000, expectedIntervalMicros);
+        } else {
+            corrected.recordValue((endTime - intendedNanos) / 1000);
+        }
+    }
+
+    private synchronized LoadReport.Interval takeInterval() {
+        long now = System.nanoTime();
+        Histogram intervalCorrected = corrected.getIntervalHistogram();
+        Histogram intervalRaw = raw.getIntervalHistogram();
+        totalCorrected.add(intervalCorrected);
+        totalRaw.add(intervalRaw);
+        long sentNow = sent.get();
+        long completedNow = completed.get();
+        long errorsNow = errors.get();
+        LoadReport.Interval interval = summarize(elapsedSeconds(now), sentNow - lastSent, completedNow - lastCompleted, errorsNow - lastErrors, now - lastReportNanos, intervalCorrected, intervalRaw);
+        if (intervalRaw.getTotalCount() > 0) {
+            expectedIntervalMicros = intervalRaw.getValueAtPercentile(50);
+        }
+        lastSent = sentNow;
+        lastCompleted = completedNow;
+        lastErrors = errorsNow;
+        lastReportNanos = now;
+        return interval;
+    }
+
+    private LoadReport.Interval summarize(double elapsedSeconds, long sentCount, long completedCount, long errorCount, long spanNanos, Histogram latency, Histogram rawLatency) {
+        long finished = completedCount + errorCount;
+        double throughput = spanNanos > 0 ? completedCount * 1e9 / spanNanos : 0;
+        return new LoadReport.Interval(elapsedSeconds, sentCount, completedCount, errorCount, inFlight.get(), throughput, finished > 0 ? (double) errorCount / finished : 0,
+                millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(90)), millis(latency.getValueAtPercentile(99)),
+                millis(latency.getValueAtPercentile(99.9)), millis(latency.getMaxValue()), millis(rawLatency.getValueAtPercentile(50)), millis(rawLatency.getValueAtPercentile(99)));
+    }
+
+    private double elapsedSeconds(long now) {
+        return (now - startNanos) / 1e9;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,138 @@
+package org.bcmoj.client.load;
+
+import org.bcmoj.client.CodingClient;
+import org.bcmoj.client.JudgeOptions;
+import org.bcmoj.client.batch.BatchJob;
+import org.bcmoj.client.batch.BatchManifest;
+import org.bcmoj.client.db.DatabaseConfig;
+import org.bcmoj.client.db.DatabaseService;
+import org.bcmoj.client.net.JudgeCluster;
+import org.bcmoj.client.net.NetworkService;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Headless load test entry point: {@code LoadMain <manifest|dir> (--rate N | --concurrency N) [options]}.
+ */
+public class LoadMain {
+    private static final String USAGE = """
+            Usage: LoadMain <manifest file | source dir> (--rate N | --concurrency N) [options]
+              --server host:port      judge server, repeatable (default localhost:12345)
+              --rate N                open loop: target submissions per second
+              --concurrency N         closed loop: concurrent senders
+              --duration S            test length in seconds (default 60)
+              --ramp-up S             linear ramp-up in seconds (default 0)
+              --interval S            report interval in seconds (default 5)
+              --max-in-flight N       cap on outstanding submissions in rate mode (default 10000)
+              --timeout MS            response timeout (default 200000)
+              --synthetic N           skip the database and give every source a generated problem with N checkpoints
+              --db-host HOST --db-port PORT --db-user USER --db-pass PASS --db-name NAME
+              --security --o2 --new-format --compare N
+              --keep-alive            reuse judge connections
+              --multiplexed           share one connection per server between submissions
+              --async                 send through the non-blocking client instead of a thread per submission
+              --compress LEVEL        negotiate deflate compression (level 1-9) with the judge
+              --test-data-refs        send checkpoints as hashes; the judge fetches test data it lacks
+              --report FILE           write per-interval results as JSON to FILE
+            """;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+        Path input = Path.of(args[0]);
+        List<String> servers = new ArrayList<>();
+        String dbHost = "localhost", dbUser = "root", dbPass = "password", dbName = "bcmoj";
+        int dbPort = 3306, concurrency = 0, maxInFlight = 10_000, timeout = 200000, compareMode = 1, synthetic = 0;
+        double rate = 0, duration = 60, rampUp = 0, interval = 5;
+        boolean securityCheck = false, enableO2 = false, useNewFormat = false, keepAlive = false, multiplexed = false, testDataRefs = false, async = false;
+        Integer compressionLevel = null;
+        Path report = null;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--server" -> servers.add(args[++i]);
+                case "--rate" -> rate = Double.parseDouble(args[++i]);
+                case "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                case "--duration" -> duration = Double.parseDouble(args[++i]);
+                case "--ramp-up" -> rampUp = Double.parseDouble(args[++i]);
+                case "--interval" -> interval = Double.parseDouble(args[++i]);
+                case "--max-in-flight" -> maxInFlight = Integer.parseInt(args[++i]);
+                case "--timeout" -> timeout = Integer.parseInt(args[++i]);
+                case "--synthetic" -> synthetic = Integer.parseInt(args[++i]);
+                case "--db-host" -> dbHost = args[++i];
+                case "--db-port" -> dbPort = Integer.parseInt(args[++i]);
+                case "--db-user" -> dbUser = args[++i];
+                case "--db-pass" -> dbPass = args[++i];
+                case "--db-name" -> dbName = args[++i];
+                case "--security" -> securityCheck = true;
+                case "--o2" -> enableO2 = true;
+                case "--new-format" -> useNewFormat = true;
+                case "--compare" -> compareMode = Integer.parseInt(args[++i]);
+                case "--keep-alive" -> keepAlive = true;
+                case "--multiplexed" -> multiplexed = true;
+                case "--async" -> async = true;
+                case "--compress" -> compressionLevel = Integer.parseInt(args[++i]);
+                case "--test-data-refs" -> testDataRefs = true;
+                case "--report" -> report = Path.of(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.err.print(USAGE);
+                    System.exit(2);
+                }
+            }
+        }
+        if ((rate > 0) == (concurrency > 0)) {
+            System.err.println("Give exactly one of --rate or --concurrency");
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+        if (servers.isEmpty()) {
+            servers.add("localhost:12345");
+        }
+
+        CodingClient.setConsoleLogging(false);
+        JudgeOptions options = new JudgeOptions(securityCheck, enableO2, compareMode, useNewFormat, testDataRefs);
+        List<BatchJob> jobs = BatchManifest.load(input);
+        LoadCorpus corpus;
+        if (synthetic > 0) {
+            List<Path> sources = new ArrayList<>();
+            jobs.forEach(job -> sources.add(job.source()));
+            corpus = LoadCorpus.synthetic(sources, synthetic, options);
+        } else {
+            try (DatabaseService databaseService = new DatabaseService()) {
+                corpus = LoadCorpus.fromJobs(jobs, databaseService, new DatabaseConfig(dbHost, dbPort, dbUser, dbPass, dbName), options);
+            }
+        }
+        System.out.println("Loaded " + corpus.items().size() + " submissions from " + input);
+
+        NetworkService networkService = new NetworkService();
+        networkService.setKeepAlive(keepAlive);
+        networkService.setMultiplexed(multiplexed);
+        networkService.setCompressionLevel(compressionLevel);
+        networkService.setTestDataRefs(testDataRefs);
+        JudgeCluster cluster = new JudgeCluster(networkService, JudgeCluster.Endpoint.parseList(String.join(",", servers), 12345));
+        LoadGenerator generator = new LoadGenerator(networkService, cluster, corpus, timeout);
+        generator.setRate(rate);
+        generator.setConcurrency(concurrency);
+        generator.setDurationMillis((long) (duration * 1000));
+        generator.setRampUpMillis((long) (rampUp * 1000));
+        generator.setReportIntervalMillis((long) (interval * 1000));
+        generator.setMaxInFlight(maxInFlight);
+        generator.setAsync(async);
+        generator.setIntervalListener(System.out::println);
+
+        LoadReport result = generator.run();
+        System.out.println("Total: " + result.total());
+        cluster.stats().forEach(stats -> System.out.println("Judge " + stats));
+        if (report != null) {
+            result.writeJson(report);
+            System.out.println("Report written to " + report);
+        }
+        cluster.close();
+        networkService.getConnectionPool().close();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,29 @@
+package org.bcmoj.client.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Outcome of a load run. Latencies are in milliseconds; the plain percentiles are measured from each request's
+ * intended start, so stalls are charged to every request that should have been sent during them, and the raw
+ * ones from the moment the request was actually sent.
+ */
+public record LoadReport(List<Interval> intervals, Interval total) {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    public void writeJson(Path path) throws IOException {
+        mapper.writerWithDefaultPrettyPrinter().writeValue(path.toFile(), this);
+    }
+
+    public record Interval(double elapsedSeconds, long sent, long completed, long errors, int inFlight, double throughputPerSecond, double errorRate,
+                           double p50Millis, double p90Millis, double p99Millis, double p999Millis, double maxMillis, double rawP50Millis, double rawP99Millis) {
+        @Override
+        public String toString() {
+            return String.format("%7.1fs sent=%d done=%d err=%d (%.2f%%) inFlight=%d %.1f/s p50=%.1fms p90=%.1fms p99=%.1fms p99.9=%.1fms max=%.1fms (raw p50=%.1fms p99=%.1fms)",
+                    elapsedSeconds, sent, completed, errors, errorRate * 100, inFlight, throughputPerSecond, p50Millis, p90Millis, p99Millis, p999Millis, maxMillis, rawP50Millis, rawP99Millis);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.bcmoj.client.metrics;
+
+/**
+ * The stages a submission goes through, in order. TOTAL spans everything from the first byte sent to the
+ * last frame received.
+ */
+public enum Phase {
+    DB_FETCH,
+    CONFIG_BUILD,
+    CONNECT,
+    UPLOAD,
+    FIRST_FRAME,
+    PARSE,
+    TOTAL
+}
@@ -0,0 +1,170 @@
+package org.bcmoj.client.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Process-wide latency histograms for every submission phase, recorded in microseconds with three significant
+ * digits. Callers take {@code System.nanoTime()} before a phase and pass it to {@link #recordSince}.
+ */
+public class PipelineMetrics implements PipelineMetricsMXBean {
+    public static final String OBJECT_NAME = "org.bcmoj.client:type=PipelineMetrics";
+
+    private static final PipelineMetrics instance = new PipelineMetrics();
+    private static final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final Map<Phase, ConcurrentHistogram> histograms = new EnumMap<>(Phase.class);
+    private final AtomicLong submissions = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long startedAt = System.currentTimeMillis();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(OBJECT_NAME));
+        } catch (Exception | LinkageError e) {
+            System.err.println("Unable to register pipeline metrics with JMX: " + e.getMessage());
+        }
+    }
+
+    private PipelineMetrics() {
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new ConcurrentHistogram(3));
+        }
+    }
+
+    public static PipelineMetrics get() {
+        return instance;
+    }
+
+    public void recordSince(Phase phase, long startNanos) {
+        record(phase, System.nanoTime() - startNanos);
+    }
+
+    public void record(Phase phase, long nanos) {
+        histograms.get(phase).recordValue(Math.max(0, nanos / 1000));
+    }
+
+    public void submissionFinished(boolean success) {
+        submissions.incrementAndGet();
+        if (!success) {
+            failures.incrementAndGet();
+        }
+    }
+
+    public long count(Phase phase) {
+        return histograms.get(phase).getTotalCount();
+    }
+
+    /**
+     * The given percentile (0-100) of one phase in milliseconds, or 0 before anything was recorded.
+     */
+    public double percentileMillis(Phase phase, double percentile) {
+        return millis(histograms.get(phase).getValueAtPercentile(percentile));
+    }
+
+    public Snapshot snapshot() {
+        List<PhaseSummary> phases = new ArrayList<>();
+        for (Phase phase : Phase.values()) {
+            Histogram histogram = histograms.get(phase).copy();
+            phases.add(new PhaseSummary(phase.name(), histogram.getTotalCount(), millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getMaxValue()), histogram.getMean() / 1000.0));
+        }
+        return new Snapshot(System.currentTimeMillis() - startedAt, submissions.get(), failures.get(), getThroughputPerSecond(), phases);
+    }
+
+    public void writeJson(Path file) throws IOException {
+        Files.write(file, mapper.writeValueAsBytes(snapshot()));
+    }
+
+    @Override
+    public long getSubmissions() {
+        return submissions.get();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public double getThroughputPerSecond() {
+        long elapsed = System.currentTimeMillis() - startedAt;
+        return elapsed > 0 ? submissions.get() * 1000.0 / elapsed : 0;
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        histograms.forEach((phase, histogram) -> counts.put(phase.name(), histogram.getTotalCount()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getP50Millis() {
+        return perPhase(PhaseSummary::p50Millis);
+    }
+
+    @Override
+    public Map<String, Double> getP99Millis() {
+        return perPhase(PhaseSummary::p99Millis);
+    }
+
+    @Override
+    public Map<String, Double> getMaxMillis() {
+        return perPhase(PhaseSummary::maxMillis);
+    }
+
+    @Override
+    public String getJson() {
+        try {
+            return mapper.writeValueAsString(snapshot());
+        } catch (IOException e) {
+            return "{\"error\":\"" + e.getMessage() + "\"}";
+        }
+    }
+
+    @Override
+    public void reset() {
+        histograms.values().forEach(Histogram::reset);
+        submissions.set(0);
+        failures.set(0);
+        startedAt = System.currentTimeMillis();
+    }
+
+    private Map<String, Double> perPhase(ToDoubleFunction<PhaseSummary> value) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (PhaseSummary summary : snapshot().phases()) {
+            values.put(summary.phase(), value.applyAsDouble(summary));
+        }
+        return values;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    public record PhaseSummary(String phase, long count, double p50Millis, double p90Millis, double p99Millis, double maxMillis, double meanMillis) {
+        @Override
+        public String toString() {
+            return String.format("%s: count=%d, p50=%.2fms, p90=%.2fms, p99=%.2fms, max=%.2fms", phase, count, p50Millis, p90Millis, p99Millis, maxMillis);
+        }
+    }
+
+    public record Snapshot(long uptimeMillis, long submissions, long failures, double throughputPerSecond, List<PhaseSummary> phases) {
+    }
+}
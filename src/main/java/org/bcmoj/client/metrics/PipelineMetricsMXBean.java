@@ -0,0 +1,27 @@
+package org.bcmoj.client.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link PipelineMetrics}, registered as {@code org.bcmoj.client:type=PipelineMetrics}.
+ * Latency maps are keyed by phase name and given in milliseconds.
+ */
+public interface PipelineMetricsMXBean {
+    long getSubmissions();
+
+    long getFailures();
+
+    double getThroughputPerSecond();
+
+    Map<String, Long> getCounts();
+
+    Map<String, Double> getP50Millis();
+
+    Map<String, Double> getP99Millis();
+
+    Map<String, Double> getMaxMillis();
+
+    String getJson();
+
+    void reset();
+}
@@ -0,0 +1,369 @@
+package org.bcmoj.client.net;
+
+import org.bcmoj.client.CodingClient;
+import org.bcmoj.client.EvaluationResult;
+import org.bcmoj.client.metrics.Phase;
+import org.bcmoj.client.metrics.PipelineMetrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking counterpart of NetworkService.sendAndStream. Every submission is a small state machine on an
+ * AsynchronousSocketChannel (connect, gathering write of the request, then reading and parsing frames as they
+ * arrive), so thousands of submissions can wait on the judge while sharing a few I/O threads.
+ * <p>
+ * The returned future fails with a SubmissionTimeoutException once one of its deadlines passes, and cancelling
+ * it closes the connection; either way the judge sees the client hang up. Reads and writes carry the channel's
+ * own timeouts, while connect and the total deadline are watched by a shared timer thread. Checkpoint listeners
+ * run on the I/O threads and must not block. Connections use the plain protocol, without negotiated features.
+ */
+public class AsyncJudgeClient implements Closeable {
+    public static final int DEFAULT_IO_THREADS = 2;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final AsynchronousChannelGroup group;
+    private final ScheduledExecutorService timer;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public AsyncJudgeClient() throws IOException {
+        this(DEFAULT_IO_THREADS);
+    }
+
+    public AsyncJudgeClient(int ioThreads) throws IOException {
+        AtomicInteger threadCount = new AtomicInteger();
+        group = AsynchronousChannelGroup.withFixedThreadPool(ioThreads, r -> {
+            Thread t = new Thread(r, "judge-async-io-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "judge-async-timer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts judging the submission and returns at once. The request is prepared on the calling thread (source
+     * hashed, config serialized); everything after that happens on the I/O threads. A deadline of 0 waits
+     * forever.
+     */
+    public CompletableFuture<EvaluationResult> submit(Submission submission, String serverHost, int serverPort, long deadlineMillis, Map<Integer, String> resultMapping, ResponseListener listener) {
+        return submit(submission, serverHost, serverPort, SubmissionDeadlines.total(deadlineMillis), resultMapping, listener);
+    }
+
+    public CompletableFuture<EvaluationResult> submit(Submission submission, String serverHost, int serverPort, SubmissionDeadlines deadlines, Map<Integer, String> resultMapping, ResponseListener listener) {
+        CompletableFuture<EvaluationResult> future = new CompletableFuture<>();
+        Exchange exchange;
+        try {
+            exchange = new Exchange(submission, new ResultAccumulator(resultMapping, listener), future, deadlines.start());
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        inFlight.incrementAndGet();
+        exchange.startTotalTimer();
+        future.whenComplete((result, failure) -> exchange.finish(failure == null));
+        exchange.connect(new InetSocketAddress(serverHost, serverPort));
+        return future;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        try {
+            group.shutdownNow();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private final class Exchange {
+        private final CompletableFuture<EvaluationResult> future;
+        private final ResultAccumulator accumulator;
+        private final CheckpointParser parser = new CheckpointParser();
+        private final CheckpointTable frameRows = new CheckpointTable();
+        private final ByteBuffer[] request;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final long startTime = System.nanoTime();
+        private final SubmissionDeadlines.Clock clock;
+        private volatile SubmissionDeadlines.Stage stage = SubmissionDeadlines.Stage.CONNECT;
+        private ScheduledFuture<?> connectTimer;
+        private ScheduledFuture<?> totalTimer;
+        private AsynchronousSocketChannel channel;
+        private long phaseStart = startTime;
+        private long parseNanos;
+        private boolean firstFrame = true;
+        private byte[] frame;
+        private int framePosition;
+        private boolean finished;
+
+        Exchange(Submission submission, ResultAccumulator accumulator, CompletableFuture<EvaluationResult> future, SubmissionDeadlines.Clock clock) throws IOException {
+            this.future = future;
+            this.accumulator = accumulator;
+            this.clock = clock;
+            this.request = encode(submission);
+        }
+
+        synchronized void startTotalTimer() {
+            long total = clock.deadlines().totalMillis();
+            if (total > 0) {
+                totalTimer = timer.schedule(() -> future.completeExceptionally(new SubmissionTimeoutException(SubmissionDeadlines.Stage.TOTAL, total)), total, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void connect(InetSocketAddress address) {
+            AsynchronousSocketChannel opened;
+            try {
+                opened = AsynchronousSocketChannel.open(group);
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            synchronized (this) {
+                if (finished) {
+                    closeQuietly(opened);
+                    return;
+                }
+                channel = opened;
+                long connectTimeout = clock.deadlines().connectMillis();
+                if (connectTimeout > 0) {
+                    connectTimer = timer.schedule(() -> {
+                        if (stage == SubmissionDeadlines.Stage.CONNECT) {
+                            future.completeExceptionally(clock.expired(SubmissionDeadlines.Stage.CONNECT));
+                        }
+                    }, connectTimeout, TimeUnit.MILLISECONDS);
+                }
+            }
+            channel.connect(address, null, new Handler<Void>() {
+                @Override
+                void onCompleted(Void result) throws IOException {
+                    PipelineMetrics.get().recordSince(Phase.CONNECT, phaseStart);
+                    phaseStart = System.nanoTime();
+                    stage = SubmissionDeadlines.Stage.UPLOAD;
+                    write();
+                }
+            });
+        }
+
+        /**
+         * The channel timeout for the next operation of the current stage; the upload deadline covers all the
+         * writes together, so each write only gets what is left of it.
+         */
+        private long operationTimeout() throws SubmissionTimeoutException {
+            long timeout = clock.timeoutFor(stage);
+            long upload = clock.deadlines().uploadMillis();
+            if (stage == SubmissionDeadlines.Stage.UPLOAD && upload > 0) {
+                long left = upload - (System.nanoTime() - phaseStart) / 1_000_000;
+                if (left <= 0) {
+                    throw clock.expired(stage);
+                }
+                timeout = timeout > 0 ? Math.min(timeout, left) : left;
+            }
+            return timeout;
+        }
+
+        private void write() throws IOException {
+            channel.write(request, 0, request.length, operationTimeout(), TimeUnit.MILLISECONDS, null, new Handler<Long>() {
+                @Override
+                void onCompleted(Long written) throws IOException {
+                    if (request[request.length - 1].hasRemaining()) {
+                        write();
+                        return;
+                    }
+                    PipelineMetrics.get().recordSince(Phase.UPLOAD, phaseStart);
+                    phaseStart = System.nanoTime();
+                    stage = SubmissionDeadlines.Stage.FIRST_FRAME;
+                    read();
+                }
+            });
+        }
+
+        private void read() throws IOException {
+            channel.read(readBuffer, operationTimeout(), TimeUnit.MILLISECONDS, null, new Handler<Integer>() {
+                @Override
+                void onCompleted(Integer read) throws IOException {
+                    if (read < 0) {
+                        // like the blocking path, a judge that hangs up before the terminator lost the response
+                        throw new EOFException("Connection closed before end of response");
+                    }
+                    if (firstFrame) {
+                        PipelineMetrics.get().recordSince(Phase.FIRST_FRAME, phaseStart);
+                        firstFrame = false;
+                        stage = SubmissionDeadlines.Stage.INTER_FRAME;
+                    }
+                    readBuffer.flip();
+                    boolean done = consumeFrames();
+                    readBuffer.compact();
+                    if (done) {
+                        complete();
+                    } else {
+                        read();
+                    }
+                }
+            });
+        }
+
+        /**
+         * Parses every complete frame in the read buffer; true once the zero-length terminator was seen.
+         */
+        private boolean consumeFrames() {
+            while (true) {
+                if (frame == null) {
+                    if (readBuffer.remaining() < Integer.BYTES) {
+                        return false;
+                    }
+                    int length = readBuffer.getInt();
+                    if (length == 0) {
+                        return true;
+                    }
+                    frame = new byte[length];
+                    framePosition = 0;
+                }
+                int chunk = Math.min(readBuffer.remaining(), frame.length - framePosition);
+                readBuffer.get(frame, framePosition, chunk);
+                framePosition += chunk;
+                if (framePosition < frame.length) {
+                    return false;
+                }
+                long parseStart = System.nanoTime();
+                frameRows.clear();
+                try {
+                    parser.parseFrame(frame, frameRows);
+                } catch (IOException e) {
+                    CodingClient.log("Failed to parse response: " + new String(frame, StandardCharsets.UTF_8) + ". Error: " + e.getMessage());
+                }
+                parseNanos += System.nanoTime() - parseStart;
+                frameRows.forEach(accumulator);
+                frame = null;
+            }
+        }
+
+        private void complete() {
+            PipelineMetrics.get().record(Phase.PARSE, parseNanos);
+            future.complete(accumulator.toEvaluationResult());
+        }
+
+        /**
+         * Runs once, when the future completes for any reason, including deadline expiry and cancellation.
+         */
+        synchronized void finish(boolean success) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            inFlight.decrementAndGet();
+            if (connectTimer != null) {
+                connectTimer.cancel(false);
+            }
+            if (totalTimer != null) {
+                totalTimer.cancel(false);
+            }
+            if (channel != null) {
+                closeQuietly(channel);
+            }
+            PipelineMetrics.get().recordSince(Phase.TOTAL, startTime);
+            PipelineMetrics.get().submissionFinished(success);
+        }
+
+        private abstract class Handler<V> implements CompletionHandler<V, Void> {
+            abstract void onCompleted(V result) throws IOException;
+
+            @Override
+            public void completed(V result, Void attachment) {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    onCompleted(result);
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                future.completeExceptionally(e instanceof InterruptedByTimeoutException ? clock.expired(stage) : e);
+            }
+        }
+    }
+
+    private static void closeQuietly(AsynchronousSocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * The whole request as buffers for one gathering write: header, source, config and hash. The source is read
+     * into a heap buffer rather than memory-mapped, since a mapping keeps the file locked on Windows until the
+     * buffer is garbage collected.
+     */
+    private static ByteBuffer[] encode(Submission submission) throws IOException {
+        File file = submission.source();
+        if (!file.exists()) {
+            throw new FileNotFoundException("File not exist: " + file.getPath());
+        }
+        ByteBuffer body;
+        try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = source.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Source file too large: " + size + " bytes");
+            }
+            body = ByteBuffer.allocate((int) size);
+            while (body.hasRemaining()) {
+                if (source.read(body) == -1) {
+                    throw new EOFException("File shrank while reading");
+                }
+            }
+            body.flip();
+        }
+        String hash = submission.sourceHash();
+        if (hash == null) {
+            MessageDigest digest = JudgeConnection.sha256();
+            digest.update(body.duplicate());
+            hash = JudgeConnection.toHex(digest.digest());
+        }
+        byte[] filename = file.getName().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + filename.length + Long.BYTES);
+        header.putInt(filename.length).put(filename).putLong(body.remaining()).flip();
+
+        ConfigPayload config = submission.config().inline();
+        ByteArrayOutputStream configBytes = new ByteArrayOutputStream(Integer.BYTES + config.length());
+        configBytes.write(new byte[Integer.BYTES]);
+        config.writeTo(configBytes);
+        ByteBuffer configBuffer = ByteBuffer.wrap(configBytes.toByteArray());
+        configBuffer.putInt(0, configBuffer.remaining() - Integer.BYTES);
+
+        byte[] hashBytes = hash.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES + hashBytes.length);
+        trailer.putInt(hashBytes.length).put(hashBytes).flip();
+        return new ByteBuffer[]{header, body, configBuffer, trailer};
+    }
+}
@@ -0,0 +1,219 @@
+package org.bcmoj.client.net;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.bcmoj.client.CodingClient;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Parses response frames with Jackson's streaming parser and reports each checkpoint to a sink as soon as it is
+ * complete, without building a JsonNode tree. Handles both the new format
+ * ({"checkpoints": {"1": {"res", "time", "mem"}}}) and the old flat format ({"1_res", "1_time", "1_mem"}).
+ * Checkpoints whose key is not a valid index are skipped rather than failing the frame.
+ * Not thread-safe: old-format scratch arrays are reused between frames.
+ */
+public class CheckpointParser {
+    private static final JsonFactory factory = new JsonFactory();
+    private static final int MAX_OLD_FORMAT_INDEX = 1 << 20;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private int[] order = new int[16];
+    private int orderSize;
+    private int[] codes = new int[16];
+    private double[] times = new double[16];
+    private long[] memories = new long[16];
+    private boolean[] seen = new boolean[16];
+    private int[] touched = new int[16];
+    private int touchedSize;
+    private boolean[] isTouched = new boolean[16];
+
+    public void parseFrame(byte[] frame, CheckpointSink sink) throws IOException {
+        try (JsonParser parser = factory.createParser(frame)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Response frame is not a JSON object");
+            }
+            orderSize = 0;
+            touchedSize = 0;
+            try {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if (value == JsonToken.START_OBJECT && name.equals("checkpoints")) {
+                        parseNewFormatCheckpoints(parser, sink);
+                    } else if (value.isScalarValue()) {
+                        collectOldFormatField(parser, name);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                for (int i = 0; i < orderSize; i++) {
+                    int index = order[i];
+                    sink.onCheckpoint(index, codes[index], times[index], memories[index]);
+                }
+            } finally {
+                // every index a field was written to, including time or mem without a res
+                for (int i = 0; i < touchedSize; i++) {
+                    int index = touched[i];
+                    isTouched[index] = false;
+                    seen[index] = false;
+                    times[index] = 0.0;
+                    memories[index] = 0L;
+                }
+            }
+        }
+    }
+
+    private void parseNewFormatCheckpoints(JsonParser parser, CheckpointSink sink) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            int index = parseIndex(name, name.length());
+            if (index < 0) {
+                CodingClient.log("Skipping checkpoint with invalid index: " + name);
+            }
+            if (parser.nextToken() != JsonToken.START_OBJECT || index < 0) {
+                parser.skipChildren();
+                continue;
+            }
+            boolean hasResult = false;
+            int resultCode = 0;
+            double timeUsed = 0.0;
+            long memoryUsed = 0L;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "res" -> {
+                        resultCode = parser.getValueAsInt();
+                        hasResult = true;
+                    }
+                    case "time" -> timeUsed = readDouble(parser);
+                    case "mem" -> memoryUsed = parser.getValueAsLong();
+                    default -> parser.skipChildren();
+                }
+            }
+            if (hasResult) {
+                sink.onCheckpoint(index, resultCode, timeUsed, memoryUsed);
+            }
+        }
+    }
+
+    private void collectOldFormatField(JsonParser parser, String name) throws IOException {
+        int separator = name.indexOf('_');
+        if (separator <= 0) {
+            return;
+        }
+        int suffixStart = separator + 1;
+        boolean isResult = name.startsWith("res", suffixStart) && name.length() == suffixStart + 3;
+        boolean isTime = name.startsWith("time", suffixStart) && name.length() == suffixStart + 4;
+        boolean isMemory = name.startsWith("mem", suffixStart) && name.length() == suffixStart + 3;
+        if (!isResult && !isTime && !isMemory) {
+            return;
+        }
+        int index = parseIndex(name, separator);
+        if (index < 0 || index >= MAX_OLD_FORMAT_INDEX) {
+            CodingClient.log("Skipping checkpoint field with invalid index: " + name);
+            return;
+        }
+        ensureCapacity(index);
+        if (!isTouched[index]) {
+            isTouched[index] = true;
+            if (touchedSize == touched.length) {
+                touched = Arrays.copyOf(touched, touchedSize * 2);
+            }
+            touched[touchedSize++] = index;
+        }
+        if (isResult) {
+            codes[index] = parser.getValueAsInt();
+            if (!seen[index]) {
+                seen[index] = true;
+                if (orderSize == order.length) {
+                    order = Arrays.copyOf(order, orderSize * 2);
+                }
+                order[orderSize++] = index;
+            }
+        } else if (isTime) {
+            times[index] = readDouble(parser);
+        } else {
+            memories[index] = parser.getValueAsLong();
+        }
+    }
+
+    /**
+     * Reads plain decimals such as "12.5" straight from the parser's text buffer; Jackson would materialize a
+     * String for every floating-point value. Mantissas below 2^53 with at most 22 fraction digits divide exactly
+     * into the correctly rounded double; anything else falls back to Jackson.
+     */
+    static double readDouble(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getValueAsDouble();
+        }
+        char[] chars = parser.getTextCharacters();
+        int end = parser.getTextOffset() + parser.getTextLength();
+        int i = parser.getTextOffset();
+        boolean negative = i < end && chars[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                if (mantissa >= MAX_EXACT_MANTISSA / 10) {
+                    return parser.getValueAsDouble();
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return parser.getValueAsDouble();
+            }
+        }
+        if (scale >= POWERS_OF_TEN.length) {
+            return parser.getValueAsDouble();
+        }
+        double value = mantissa / POWERS_OF_TEN[Math.max(scale, 0)];
+        return negative ? -value : value;
+    }
+
+    /**
+     * The decimal index in the first {@code end} characters of {@code name}, or -1 if they are not one.
+     */
+    private static int parseIndex(String name, int end) {
+        if (end == 0) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 0; i < end; i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9' || index > (Integer.MAX_VALUE - 9) / 10) {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+
+    private void ensureCapacity(int index) {
+        if (index < seen.length) {
+            return;
+        }
+        int capacity = Math.max(seen.length * 2, index + 1);
+        codes = Arrays.copyOf(codes, capacity);
+        times = Arrays.copyOf(times, capacity);
+        memories = Arrays.copyOf(memories, capacity);
+        seen = Arrays.copyOf(seen, capacity);
+        isTouched = Arrays.copyOf(isTouched, capacity);
+    }
+}
@@ -0,0 +1,6 @@
+package org.bcmoj.client.net;
+
+@FunctionalInterface
+public interface CheckpointSink {
+    void onCheckpoint(int index, int resultCode, double timeUsed, long memoryUsed);
+}
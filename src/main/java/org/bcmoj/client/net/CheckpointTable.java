@@ -0,0 +1,122 @@
+package org.bcmoj.client.net;
+
+import org.bcmoj.client.EvaluationResult;
+import org.bcmoj.client.TestCaseResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checkpoint results stored column by column in primitive arrays, in arrival order, with the totals kept up to
+ * date as rows are added. Recording a checkpoint allocates nothing once the arrays have grown, so a table can be
+ * cleared and reused across submissions. Not thread-safe.
+ */
+public class CheckpointTable implements CheckpointSink {
+    private int[] indexes;
+    private int[] codes;
+    private double[] times;
+    private long[] memories;
+    private int size;
+    private int accepted;
+    private double totalTime;
+    private long totalMemory;
+    private double maxTime;
+    private long maxMemory;
+
+    public CheckpointTable() {
+        this(16);
+    }
+
+    public CheckpointTable(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        indexes = new int[capacity];
+        codes = new int[capacity];
+        times = new double[capacity];
+        memories = new long[capacity];
+    }
+
+    @Override
+    public void onCheckpoint(int index, int resultCode, double timeUsed, long memoryUsed) {
+        if (size == indexes.length) {
+            int capacity = size * 2;
+            indexes = Arrays.copyOf(indexes, capacity);
+            codes = Arrays.copyOf(codes, capacity);
+            times = Arrays.copyOf(times, capacity);
+            memories = Arrays.copyOf(memories, capacity);
+        }
+        indexes[size] = index;
+        codes[size] = resultCode;
+        times[size] = timeUsed;
+        memories[size] = memoryUsed;
+        size++;
+        if (resultCode == 1) {
+            accepted++;
+        }
+        totalTime += timeUsed;
+        totalMemory += memoryUsed;
+        maxTime = Math.max(maxTime, timeUsed);
+        maxMemory = Math.max(maxMemory, memoryUsed);
+    }
+
+    /**
+     * Reports every row to the sink in arrival order.
+     */
+    public void forEach(CheckpointSink sink) {
+        for (int i = 0; i < size; i++) {
+            sink.onCheckpoint(indexes[i], codes[i], times[i], memories[i]);
+        }
+    }
+
+    public void clear() {
+        size = 0;
+        accepted = 0;
+        totalTime = 0.0;
+        totalMemory = 0L;
+        maxTime = 0.0;
+        maxMemory = 0L;
+    }
+
+    public int size() { return size; }
+    public int index(int row) { return indexes[checkRow(row)]; }
+    public int resultCode(int row) { return codes[checkRow(row)]; }
+    public double timeUsed(int row) { return times[checkRow(row)]; }
+    public long memoryUsed(int row) { return memories[checkRow(row)]; }
+
+    public int accepted() { return accepted; }
+    public double totalTime() { return totalTime; }
+    public long totalMemory() { return totalMemory; }
+    public double maxTime() { return maxTime; }
+    public long maxMemory() { return maxMemory; }
+    public double averageTime() { return size > 0 ? totalTime / size : 0.0; }
+    public long averageMemory() { return size > 0 ? totalMemory / size : 0L; }
+
+    public int count(int resultCode) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (codes[i] == resultCode) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Materializes the rows as TestCaseResults, for callers of the record-based API.
+     */
+    public EvaluationResult toEvaluationResult(Map<Integer, String> resultMapping) {
+        List<TestCaseResult> testResults = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            testResults.add(new TestCaseResult(String.valueOf(indexes[i]), resultMapping.getOrDefault(codes[i], "Unknown Status"), times[i], memories[i]));
+        }
+        return new EvaluationResult(List.copyOf(testResults), accepted, size, averageTime(), averageMemory());
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for " + size + " checkpoints");
+        }
+        return row;
+    }
+}
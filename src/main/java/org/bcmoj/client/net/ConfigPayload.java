@@ -0,0 +1,55 @@
+package org.bcmoj.client.net;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+
+/**
+ * The JSON config frame of a submission. The protocol needs its length before the body, so generated payloads
+ * report the length up front and then write themselves straight into the connection's output stream.
+ */
+public interface ConfigPayload {
+    int length() throws IOException;
+
+    void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * Source of the test data this config references by hash, or null when all test data is inline.
+     */
+    default TestDataSource testData() {
+        return null;
+    }
+
+    /**
+     * The same config with all test data inline, for judges that cannot fetch referenced test data.
+     */
+    default ConfigPayload inline() throws IOException {
+        return this;
+    }
+
+    default String sha256() throws IOException {
+        MessageDigest digest = JudgeConnection.sha256();
+        writeTo(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+        return JudgeConnection.toHex(digest.digest());
+    }
+
+    static ConfigPayload of(byte[] bytes) {
+        return new ConfigPayload() {
+            @Override
+            public int length() {
+                return bytes.length;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(bytes);
+            }
+        };
+    }
+
+    static ConfigPayload of(String json) {
+        return of(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,219 @@
+package org.bcmoj.client.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.net.ProtocolException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps idle judge connections per (serverHost, serverPort) so keep-alive submissions skip the TCP handshake.
+ */
+public class ConnectionPool implements Closeable {
+    public static final int DEFAULT_MAX_IDLE_PER_ENDPOINT = 8;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60_000;
+
+    private final int maxIdlePerEndpoint;
+    private final long idleTimeoutMillis;
+    private final Map<String, Deque<JudgeConnection>> idle = new ConcurrentHashMap<>();
+    private final Map<String, MultiplexedConnection> multiplexed = new ConcurrentHashMap<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final ScheduledExecutorService evictor;
+    private final Set<String> plainEndpoints = ConcurrentHashMap.newKeySet();
+    private volatile Integer compressionLevel;
+    private volatile boolean testDataRefs;
+
+    public ConnectionPool() {
+        this(DEFAULT_MAX_IDLE_PER_ENDPOINT, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    public ConnectionPool(int maxIdlePerEndpoint, long idleTimeoutMillis) {
+        this.maxIdlePerEndpoint = maxIdlePerEndpoint;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "judge-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Enables negotiated deflate compression for connections opened from now on; null turns it off. Endpoints
+     * that do not answer the feature handshake are remembered and get plain connections.
+     */
+    public void setCompressionLevel(Integer compressionLevel) {
+        this.compressionLevel = compressionLevel;
+        plainEndpoints.clear();
+    }
+
+    /**
+     * Offers test data references to judges for connections opened from now on; submissions with a referencing
+     * config are sent inline on connections where the judge declined.
+     */
+    public void setTestDataRefs(boolean testDataRefs) {
+        this.testDataRefs = testDataRefs;
+        plainEndpoints.clear();
+    }
+
+    public Integer getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    private JudgeConnection open(String host, int port, int connectTimeout) throws IOException {
+        Integer level = compressionLevel;
+        int features = (level != null ? JudgeConnection.FEATURE_DEFLATE : 0) | (testDataRefs ? JudgeConnection.FEATURE_TEST_DATA_REFS : 0);
+        if (features == 0 || plainEndpoints.contains(key(host, port))) {
+            return JudgeConnection.open(host, port, connectTimeout);
+        }
+        try {
+            return JudgeConnection.open(host, port, features, level != null ? level : DeflateCodec.DEFAULT_LEVEL, connectTimeout);
+        } catch (ProtocolException e) {
+            plainEndpoints.add(key(host, port));
+            return JudgeConnection.open(host, port, connectTimeout);
+        }
+    }
+
+    public JudgeConnection acquire(String host, int port) throws IOException {
+        return acquire(host, port, 0);
+    }
+
+    /**
+     * Returns a healthy idle connection, or opens one with the given connect timeout in ms (0 for none).
+     */
+    public JudgeConnection acquire(String host, int port, int connectTimeout) throws IOException {
+        Deque<JudgeConnection> connections = idle.get(key(host, port));
+        if (connections != null) {
+            while (true) {
+                JudgeConnection connection;
+                synchronized (connections) {
+                    connection = connections.pollFirst();
+                }
+                if (connection == null) {
+                    break;
+                }
+                if (connection.idleMillis() < idleTimeoutMillis && connection.isHealthy()) {
+                    reused.incrementAndGet();
+                    active.incrementAndGet();
+                    connection.markUsed();
+                    return connection;
+                }
+                connection.close();
+                evicted.incrementAndGet();
+            }
+        }
+        JudgeConnection connection = open(host, port, connectTimeout);
+        created.incrementAndGet();
+        active.incrementAndGet();
+        connection.markUsed();
+        return connection;
+    }
+
+    public void release(JudgeConnection connection, boolean reusable) {
+        active.decrementAndGet();
+        if (!reusable) {
+            connection.close();
+            return;
+        }
+        connection.touch();
+        Deque<JudgeConnection> connections = idle.computeIfAbsent(key(connection.getHost(), connection.getPort()), k -> new ArrayDeque<>());
+        synchronized (connections) {
+            if (connections.size() < maxIdlePerEndpoint) {
+                connections.addFirst(connection);
+                return;
+            }
+        }
+        connection.close();
+        evicted.incrementAndGet();
+    }
+
+    public MultiplexedConnection acquireMultiplexed(String host, int port) throws IOException {
+        return acquireMultiplexed(host, port, 0);
+    }
+
+    public MultiplexedConnection acquireMultiplexed(String host, int port, int connectTimeout) throws IOException {
+        String key = key(host, port);
+        synchronized (multiplexed) {
+            MultiplexedConnection connection = multiplexed.get(key);
+            if (connection == null || !connection.isOpen()) {
+                connection = new MultiplexedConnection(open(host, port, connectTimeout));
+                created.incrementAndGet();
+                multiplexed.put(key, connection);
+            } else {
+                reused.incrementAndGet();
+            }
+            return connection;
+        }
+    }
+
+    public void evictIdle() {
+        for (Deque<JudgeConnection> connections : idle.values()) {
+            synchronized (connections) {
+                connections.removeIf(connection -> {
+                    if (connection.idleMillis() >= idleTimeoutMillis || !connection.isHealthy()) {
+                        connection.close();
+                        evicted.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                });
+            }
+        }
+        multiplexed.values().removeIf(connection -> {
+            if (!connection.isOpen()) {
+                connection.close();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    public PoolStats stats(String host, int port) {
+        Deque<JudgeConnection> connections = idle.get(key(host, port));
+        int idleCount = 0;
+        if (connections != null) {
+            synchronized (connections) {
+                idleCount = connections.size();
+            }
+        }
+        MultiplexedConnection mux = multiplexed.get(key(host, port));
+        int inFlight = mux != null && mux.isOpen() ? mux.inFlight() : 0;
+        return new PoolStats(active.get(), idleCount, inFlight, created.get(), reused.get(), evicted.get());
+    }
+
+    @Override
+    public void close() {
+        evictor.shutdownNow();
+        for (Deque<JudgeConnection> connections : idle.values()) {
+            synchronized (connections) {
+                connections.forEach(JudgeConnection::close);
+                connections.clear();
+            }
+        }
+        multiplexed.values().forEach(MultiplexedConnection::close);
+        multiplexed.clear();
+    }
+
+    private static String key(String host, int port) {
+        return host + ":" + port;
+    }
+
+    public record PoolStats(int active, int idle, int multiplexedInFlight, long created, long reused, long evicted) {
+        @Override
+        public String toString() {
+            return String.format("active=%d, idle=%d, multiplexedInFlight=%d, created=%d, reused=%d, evicted=%d", active, idle, multiplexedInFlight, created, reused, evicted);
+        }
+    }
+}
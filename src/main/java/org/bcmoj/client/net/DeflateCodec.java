@@ -0,0 +1,178 @@
+package org.bcmoj.client.net;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Wire format of a connection that negotiated JudgeConnection.FEATURE_DEFLATE. Source and config bodies are
+ * sent as deflated chunks, (int length, bytes) repeated and ended by a zero length; response frames become
+ * (int compressedLength, int rawLength, bytes), with the usual zero length ending the response. Holds one
+ * Deflater and one Inflater, so each direction must be used by one thread at a time.
+ */
+public class DeflateCodec {
+    public static final int DEFAULT_LEVEL = Deflater.BEST_SPEED;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+    // deflate cannot expand data by more than about 1032:1
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    private final Deflater deflater;
+    private final Inflater inflater = new Inflater();
+    private final byte[] deflateBuffer = new byte[CHUNK_SIZE];
+    private final byte[] inflateBuffer = new byte[CHUNK_SIZE];
+    private byte[] chunk = new byte[CHUNK_SIZE];
+
+    public DeflateCodec() {
+        this(DEFAULT_LEVEL);
+    }
+
+    public DeflateCodec(int level) {
+        deflater = new Deflater(level);
+    }
+
+    /**
+     * Returns a stream that deflates everything written to it into chunks on {@code out}; closing it ends the
+     * chunk sequence but leaves {@code out} open.
+     */
+    public OutputStream deflating(DataOutputStream out) {
+        deflater.reset();
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                deflater.setInput(b, off, len);
+                while (!deflater.needsInput()) {
+                    writeChunk(out);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    writeChunk(out);
+                }
+                out.writeInt(0);
+            }
+        };
+    }
+
+    private void writeChunk(DataOutputStream out) throws IOException {
+        int length = deflater.deflate(deflateBuffer);
+        if (length > 0) {
+            out.writeInt(length);
+            out.write(deflateBuffer, 0, length);
+        }
+    }
+
+    /**
+     * Reads a chunk sequence written by {@link #deflating}, inflates it into {@code sink} and returns the number
+     * of inflated bytes.
+     */
+    public long readDeflated(DataInputStream in, OutputStream sink) throws IOException {
+        inflater.reset();
+        long total = 0;
+        int length;
+        while ((length = in.readInt()) > 0) {
+            if (length > MAX_FRAME_BYTES) {
+                throw new IOException("Invalid compressed chunk length: " + length);
+            }
+            if (length > chunk.length) {
+                chunk = new byte[length];
+            }
+            in.readFully(chunk, 0, length);
+            inflater.setInput(chunk, 0, length);
+            total += drainInflater(sink);
+        }
+        return total;
+    }
+
+    private long drainInflater(OutputStream sink) throws IOException {
+        long total = 0;
+        try {
+            int inflated;
+            while ((inflated = inflater.inflate(inflateBuffer)) > 0) {
+                sink.write(inflateBuffer, 0, inflated);
+                total += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed data", e);
+        }
+        return total;
+    }
+
+    public void writeFrame(DataOutputStream out, byte[] frame) throws IOException {
+        if (frame.length == 0) {
+            out.writeInt(0);
+            return;
+        }
+        deflater.reset();
+        deflater.setInput(frame);
+        deflater.finish();
+        byte[] compressed = new byte[Math.max(64, frame.length / 2)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = java.util.Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        out.writeInt(length);
+        out.writeInt(frame.length);
+        out.write(compressed, 0, length);
+    }
+
+    /**
+     * Reads one compressed response frame, or returns null on the zero-length terminator.
+     */
+    public byte[] readFrame(DataInputStream in) throws IOException {
+        return readFrame(in, in.readInt());
+    }
+
+    /**
+     * Reads the rest of a compressed response frame whose length has already been read.
+     */
+    public byte[] readFrame(DataInputStream in, int length) throws IOException {
+        if (length == 0) {
+            return null;
+        }
+        int rawLength = in.readInt();
+        if (length < 0 || length > MAX_FRAME_BYTES || rawLength < 0 || rawLength > MAX_FRAME_BYTES || rawLength > (long) length * MAX_DEFLATE_RATIO) {
+            throw new IOException("Invalid compressed frame lengths: " + length + " compressed, " + rawLength + " raw");
+        }
+        if (length > chunk.length) {
+            chunk = new byte[length];
+        }
+        in.readFully(chunk, 0, length);
+        inflater.reset();
+        inflater.setInput(chunk, 0, length);
+        byte[] frame = new byte[rawLength];
+        try {
+            int offset = 0;
+            while (offset < rawLength) {
+                int inflated = inflater.inflate(frame, offset, rawLength - offset);
+                if (inflated == 0 && (inflater.needsInput() || inflater.finished())) {
+                    throw new IOException("Compressed frame shorter than its declared " + rawLength + " bytes");
+                }
+                offset += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed frame", e);
+        }
+        return frame;
+    }
+
+    public void close() {
+        deflater.end();
+        inflater.end();
+    }
+}
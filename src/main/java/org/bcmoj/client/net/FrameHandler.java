@@ -0,0 +1,8 @@
+package org.bcmoj.client.net;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface FrameHandler {
+    void onFrame(byte[] frame) throws IOException;
+}
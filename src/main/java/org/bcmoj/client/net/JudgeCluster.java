@@ -0,0 +1,612 @@
+package org.bcmoj.client.net;
+
+import org.bcmoj.client.CodingClient;
+import org.bcmoj.client.metrics.Phase;
+import org.bcmoj.client.metrics.PipelineMetrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spreads submissions over several judge nodes. Each call goes to the less loaded of two randomly chosen healthy
+ * nodes (power of two choices on outstanding requests, observed latency breaking ties). Health is passive: it is
+ * derived from the calls themselves and from testConnections, not from background probes. A node that refuses a
+ * connection, or fails several calls in a row, is taken out of rotation and the call fails over to another
+ * node; after a cooldown that doubles while it keeps failing, one call is let through as a trial and a success
+ * brings the node back.
+ * <p>
+ * With a RetryPolicy, a call that found no reachable node or lost its connection mid-response is attempted
+ * again after a jittered backoff. With hedging on, executeHedged sends a duplicate to a second node when the
+ * first has not answered within the usual (p95) time to first frame, and returns whichever finishes first.
+ */
+public class JudgeCluster implements Closeable {
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+    private static final long MIN_COOLDOWN_MILLIS = 1000;
+    private static final long MAX_COOLDOWN_MILLIS = 30_000;
+    private static final double LATENCY_WEIGHT = 0.2;
+    private static final long MIN_HEDGE_OBSERVATIONS = 20;
+    private static final ThreadLocal<Endpoint> lastEndpoint = new ThreadLocal<>();
+
+    private final NetworkService networkService;
+    private final List<Node> nodes;
+    private final int maxOutstandingPerNode;
+    private final Object capacityLock = new Object();
+    private final long startedAt = System.currentTimeMillis();
+    private final AtomicLong hedgesSent = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private ExecutorService hedgeExecutor;
+    private volatile RetryPolicy retryPolicy = RetryPolicy.NONE;
+    private volatile boolean hedging;
+
+    public JudgeCluster(NetworkService networkService, List<Endpoint> endpoints) {
+        this(networkService, endpoints, Integer.MAX_VALUE);
+    }
+
+    public JudgeCluster(NetworkService networkService, List<Endpoint> endpoints, int maxOutstandingPerNode) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("No judge server configured");
+        }
+        this.networkService = networkService;
+        this.maxOutstandingPerNode = maxOutstandingPerNode;
+        this.nodes = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            nodes.add(new Node(endpoint));
+        }
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Enables hedged requests in executeHedged; it needs at least two nodes and some recorded latency history.
+     */
+    public void setHedging(boolean hedging) {
+        this.hedging = hedging;
+    }
+
+    public boolean isHedging() {
+        return hedging;
+    }
+
+    /**
+     * Runs NetworkService.testConnection against every node and feeds the outcome into its health: the latency
+     * on success, a failure like that of a call. Throws the first failure once all nodes have been tried.
+     */
+    public void testConnections() throws IOException {
+        IOException firstFailure = null;
+        for (Node node : nodes) {
+            try {
+                node.succeeded(networkService.testConnection(node.endpoint.host(), node.endpoint.port()));
+            } catch (IOException e) {
+                node.unreachable(e.getCause() instanceof IOException cause ? cause : e);
+                if (firstFailure == null) {
+                    firstFailure = e;
+                }
+            }
+        }
+        synchronized (capacityLock) {
+            capacityLock.notifyAll();
+        }
+        if (firstFailure != null) {
+            throw firstFailure;
+        }
+    }
+
+    public <T> T execute(JudgeCall<T> call) throws IOException {
+        return retryPolicy.run(() -> executeOnce(call));
+    }
+
+    /**
+     * Like execute, for a call that streams its response to a listener as it arrives (the call runs
+     * {@code responded} on its first frame): a failure after that is not retried, since the listener has
+     * already seen part of the response and would see it again.
+     */
+    public <T> T executeStreaming(HedgedJudgeCall<T> call) throws IOException {
+        AtomicBoolean responded = new AtomicBoolean();
+        return retryPolicy.run(() -> executeOnce((host, port) -> call.call(host, port, () -> responded.set(true))), () -> !responded.get());
+    }
+
+    private <T> T executeOnce(JudgeCall<T> call) throws IOException {
+        List<Node> tried = new ArrayList<>();
+        IOException lastFailure = null;
+        while (tried.size() < nodes.size()) {
+            Node node = acquire(tried);
+            tried.add(node);
+            try {
+                return attempt(node, call);
+            } catch (IOException e) {
+                if (!RetryPolicy.isConnectFailure(e)) {
+                    throw e;
+                }
+                lastFailure = e;
+                CodingClient.log("Judge " + node.endpoint + " unreachable (" + e.getMessage() + "), failing over");
+            }
+        }
+        throw unreachable(lastFailure);
+    }
+
+    /**
+     * Runs the call on an acquired node and releases it. An attempt cancelled by interrupt (a losing hedge) is
+     * not counted as a node failure.
+     */
+    private <T> T attempt(Node node, JudgeCall<T> call) throws IOException {
+        lastEndpoint.set(node.endpoint);
+        long startTime = System.nanoTime();
+        try {
+            T result = call.call(node.endpoint.host(), node.endpoint.port());
+            node.completed(System.nanoTime() - startTime);
+            return result;
+        } catch (IOException e) {
+            if (!isCancellation(e)) {
+                node.failed(e);
+            }
+            throw e;
+        } finally {
+            release(node);
+        }
+    }
+
+    /**
+     * The attempt was interrupted or its future cancelled, e.g. a hedge that lost, rather than failed by the
+     * node. Deadline expiries are timeouts too, but those the node is to blame for.
+     */
+    private static boolean isCancellation(Throwable e) {
+        return e instanceof CancellationException || e instanceof ClosedByInterruptException
+                || e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException);
+    }
+
+    private static ConnectException unreachable(Throwable lastFailure) {
+        ConnectException e = new ConnectException("All judge servers unreachable");
+        e.initCause(lastFailure);
+        return e;
+    }
+
+    /**
+     * Like execute, but when hedging is on and the chosen node has not sent a frame (the call runs
+     * {@code responded} on its first one) within the p95 time to first frame, the same submission is also sent
+     * to another healthy node with spare capacity. The first attempt to complete wins and the other is
+     * cancelled by interrupting it, which closes its connection; if one attempt fails the other is awaited.
+     * A multiplexed connection is shared with other requests, and an interrupt during its upload would close
+     * it under them, so there the loser is not interrupted: it runs to the end and its result is dropped.
+     * Without hedging, or before enough latency history exists, this is executeStreaming.
+     */
+    public <T> T executeHedged(HedgedJudgeCall<T> call) throws IOException {
+        long delay = hedging && nodes.size() > 1 ? hedgeDelayMillis() : 0;
+        if (delay <= 0) {
+            return executeStreaming(call);
+        }
+        AtomicBoolean responded = new AtomicBoolean();
+        Set<Endpoint> used = ConcurrentHashMap.newKeySet();
+        CompletionService<Outcome<T>> completion = new ExecutorCompletionService<>(hedgeExecutor());
+        List<Future<Outcome<T>>> attempts = new ArrayList<>(2);
+        Node hedgeNode = null;
+        AtomicBoolean hedgeStarted = new AtomicBoolean();
+        attempts.add(completion.submit(() -> {
+            T value = execute((host, port) -> {
+                used.add(new Endpoint(host, port));
+                return call.call(host, port, () -> responded.set(true));
+            });
+            return new Outcome<>(value, lastEndpoint.get());
+        }));
+        try {
+            Future<Outcome<T>> done = completion.poll(delay, TimeUnit.MILLISECONDS);
+            if (done == null && !responded.get()) {
+                Node node = tryAcquireOther(used);
+                if (node != null) {
+                    hedgeNode = node;
+                    hedgesSent.incrementAndGet();
+                    CodingClient.log("No response within " + delay + "ms, hedging to judge " + node.endpoint);
+                    attempts.add(completion.submit(() -> {
+                        if (hedgeStarted.getAndSet(true)) {
+                            throw new InterruptedIOException("Hedge cancelled before it started");
+                        }
+                        return new Outcome<>(attempt(node, (host, port) -> call.call(host, port, () -> {})), node.endpoint);
+                    }));
+                }
+            }
+            IOException failure = null;
+            for (int i = 0; i < attempts.size(); i++) {
+                Future<Outcome<T>> future = done != null ? done : completion.take();
+                done = null;
+                try {
+                    Outcome<T> outcome = future.get();
+                    if (future != attempts.get(0)) {
+                        hedgeWins.incrementAndGet();
+                    }
+                    lastEndpoint.set(outcome.endpoint());
+                    return outcome.value();
+                } catch (ExecutionException e) {
+                    // the first node's failure is the more telling one when both attempts fail
+                    if (failure == null || future == attempts.get(0)) {
+                        failure = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                    }
+                }
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a hedged submission");
+        } finally {
+            boolean interrupt = !networkService.isMultiplexed();
+            attempts.forEach(future -> future.cancel(interrupt));
+            // whichever side claims the hedge first owns its slot: a hedge cancelled before it started releases here
+            if (hedgeNode != null && !hedgeStarted.getAndSet(true)) {
+                release(hedgeNode);
+            }
+        }
+    }
+
+    /**
+     * When to hedge: the p95 of connect, upload and time to first frame added up, or 0 while there are too few
+     * recorded submissions to tell what is slow.
+     */
+    private static long hedgeDelayMillis() {
+        PipelineMetrics metrics = PipelineMetrics.get();
+        if (metrics.count(Phase.FIRST_FRAME) < MIN_HEDGE_OBSERVATIONS) {
+            return 0;
+        }
+        double p95 = metrics.percentileMillis(Phase.CONNECT, 95) + metrics.percentileMillis(Phase.UPLOAD, 95) + metrics.percentileMillis(Phase.FIRST_FRAME, 95);
+        return Math.max(1, (long) Math.ceil(p95));
+    }
+
+    private synchronized ExecutorService hedgeExecutor() {
+        if (hedgeExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            hedgeExecutor = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "judge-hedge-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return hedgeExecutor;
+    }
+
+    public long getHedgesSent() {
+        return hedgesSent.get();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * Non-blocking counterpart of execute: nodes are chosen and failed over the same way, but the call runs on
+     * its own future. Completing the returned future early (a deadline or cancel) cancels the running call.
+     * Like execute, this waits for a free slot when every node is at capacity.
+     */
+    public <T> CompletableFuture<T> executeAsync(AsyncJudgeCall<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attemptAsync(call, new ArrayList<>(), null, result, 1);
+        return result;
+    }
+
+    private <T> void attemptAsync(AsyncJudgeCall<T> call, List<Node> tried, Throwable lastFailure, CompletableFuture<T> result, int round) {
+        if (result.isDone()) {
+            return;
+        }
+        if (tried.size() >= nodes.size()) {
+            retryAsync(call, unreachable(lastFailure), result, round);
+            return;
+        }
+        Node node;
+        try {
+            node = acquire(tried);
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        tried.add(node);
+        long startTime = System.nanoTime();
+        CompletableFuture<T> attempt = call.call(node.endpoint.host(), node.endpoint.port());
+        result.whenComplete((value, failure) -> attempt.cancel(false));
+        attempt.whenComplete((value, failure) -> {
+            release(node);
+            if (failure == null) {
+                node.completed(System.nanoTime() - startTime);
+                result.complete(value);
+                return;
+            }
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            if (!isCancellation(cause)) {
+                node.failed(cause instanceof IOException e ? e : new IOException(cause));
+            }
+            if (cause instanceof IOException e && RetryPolicy.isConnectFailure(e)) {
+                CodingClient.log("Judge " + node.endpoint + " unreachable (" + e.getMessage() + "), failing over");
+                // acquire may wait for capacity, which must not happen on the I/O thread that completed the call
+                CompletableFuture.runAsync(() -> attemptAsync(call, tried, cause, result, round));
+            } else {
+                retryAsync(call, cause, result, round);
+            }
+        });
+    }
+
+    private <T> void retryAsync(AsyncJudgeCall<T> call, Throwable failure, CompletableFuture<T> result, int round) {
+        RetryPolicy policy = retryPolicy;
+        if (round >= policy.maxAttempts() || !(failure instanceof IOException e && RetryPolicy.isRetryable(e))) {
+            result.completeExceptionally(failure);
+            return;
+        }
+        long backoff = policy.backoffMillis(round);
+        CodingClient.log("Attempt " + round + "/" + policy.maxAttempts() + " failed (" + failure.getMessage() + "), retrying in " + backoff + "ms");
+        CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS).execute(() -> attemptAsync(call, new ArrayList<>(), null, result, round + 1));
+    }
+
+    /**
+     * The node that served (or last attempted) the calling thread's most recent execute call, or null if it
+     * has made none since clearLastEndpoint.
+     */
+    public static Endpoint lastEndpoint() {
+        return lastEndpoint.get();
+    }
+
+    /**
+     * Forgets the calling thread's last endpoint, so that work which never reaches a judge reports none.
+     */
+    public static void clearLastEndpoint() {
+        lastEndpoint.remove();
+    }
+
+    private Node acquire(List<Node> exclude) throws IOException {
+        synchronized (capacityLock) {
+            while (true) {
+                Node node = choose(exclude, true);
+                if (node == null) {
+                    node = choose(exclude, false);
+                }
+                if (node != null) {
+                    take(node);
+                    return node;
+                }
+                try {
+                    capacityLock.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for a judge slot");
+                }
+            }
+        }
+    }
+
+    /**
+     * A healthy node with spare capacity that no attempt of this call has used, without waiting; null if none.
+     */
+    private Node tryAcquireOther(Set<Endpoint> used) {
+        synchronized (capacityLock) {
+            List<Node> exclude = new ArrayList<>();
+            for (Node node : nodes) {
+                if (used.contains(node.endpoint)) {
+                    exclude.add(node);
+                }
+            }
+            Node node = choose(exclude, true);
+            if (node != null) {
+                take(node);
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Claims a slot on the chosen node; a node out of rotation is being given its trial call, so the next one
+     * waits for another cooldown.
+     */
+    private void take(Node node) {
+        node.outstanding.incrementAndGet();
+        node.trialTaken();
+    }
+
+    private void release(Node node) {
+        synchronized (capacityLock) {
+            node.outstanding.decrementAndGet();
+            capacityLock.notifyAll();
+        }
+    }
+
+    private Node choose(List<Node> exclude, boolean healthyOnly) {
+        List<Node> candidates = new ArrayList<>(nodes.size());
+        long now = System.currentTimeMillis();
+        for (Node node : nodes) {
+            if (!exclude.contains(node) && (!healthyOnly || node.available(now)) && node.outstanding.get() < maxOutstandingPerNode) {
+                candidates.add(node);
+            }
+        }
+        if (candidates.size() <= 1) {
+            return candidates.isEmpty() ? null : candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Node a = candidates.get(first);
+        Node b = candidates.get(second);
+        int loadA = a.outstanding.get();
+        int loadB = b.outstanding.get();
+        if (loadA != loadB) {
+            return loadA < loadB ? a : b;
+        }
+        return a.latencyMillis <= b.latencyMillis ? a : b;
+    }
+
+    public List<NodeStats> stats() {
+        double elapsedSeconds = Math.max(1, System.currentTimeMillis() - startedAt) / 1000.0;
+        List<NodeStats> stats = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            long completed = node.completed.get();
+            double averageMillis = completed > 0 ? node.totalNanos.get() / 1e6 / completed : 0.0;
+            stats.add(new NodeStats(node.endpoint, node.healthy, node.outstanding.get(), completed, node.failed.get(), averageMillis, completed / elapsedSeconds, (long) node.latencyMillis));
+        }
+        return stats;
+    }
+
+    public List<Endpoint> endpoints() {
+        List<Endpoint> endpoints = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            endpoints.add(node.endpoint);
+        }
+        return endpoints;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+            hedgeExecutor = null;
+        }
+    }
+
+    @FunctionalInterface
+    public interface JudgeCall<T> {
+        T call(String serverHost, int serverPort) throws IOException;
+    }
+
+    /**
+     * A JudgeCall that runs {@code responded} when the judge's first response frame arrives.
+     */
+    @FunctionalInterface
+    public interface HedgedJudgeCall<T> {
+        T call(String serverHost, int serverPort, Runnable responded) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface AsyncJudgeCall<T> {
+        CompletableFuture<T> call(String serverHost, int serverPort);
+    }
+
+    public record Endpoint(String host, int port) {
+        /**
+         * Parses "host:port", or a bare host using the default port.
+         */
+        public static Endpoint parse(String text, int defaultPort) {
+            text = text.trim();
+            int split = text.lastIndexOf(':');
+            if (split < 0) {
+                return new Endpoint(text, defaultPort);
+            }
+            return new Endpoint(text.substring(0, split), Integer.parseInt(text.substring(split + 1)));
+        }
+
+        public static List<Endpoint> parseList(String text, int defaultPort) {
+            List<Endpoint> endpoints = new ArrayList<>();
+            for (String part : text.split(",")) {
+                if (!part.isBlank()) {
+                    endpoints.add(parse(part, defaultPort));
+                }
+            }
+            return endpoints;
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+
+    public record NodeStats(Endpoint endpoint, boolean healthy, int outstanding, long completed, long failed, double averageMillis, double throughputPerSecond, long latencyMillis) {
+        @Override
+        public String toString() {
+            return String.format("%s: %s, outstanding=%d, completed=%d, failed=%d, avg=%.1fms, throughput=%.2f/s, latency=%dms", endpoint, healthy ? "UP" : "DOWN", outstanding, completed, failed, averageMillis, throughputPerSecond, latencyMillis);
+        }
+    }
+
+    private record Outcome<T>(T value, Endpoint endpoint) {
+    }
+
+    private static class Node {
+        private final Endpoint endpoint;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private volatile boolean healthy = true;
+        private volatile double latencyMillis;
+        private int consecutiveFailures;
+        private long cooldownMillis;
+        private volatile long retryAtMillis;
+
+        private Node(Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        /**
+         * Healthy, or out of rotation with its cooldown over so that a trial call may go through.
+         */
+        private boolean available(long now) {
+            return healthy || now >= retryAtMillis;
+        }
+
+        private synchronized void trialTaken() {
+            if (!healthy) {
+                retryAtMillis = System.currentTimeMillis() + cooldownMillis;
+            }
+        }
+
+        private void completed(long elapsedNanos) {
+            completed.incrementAndGet();
+            totalNanos.addAndGet(elapsedNanos);
+            succeeded(elapsedNanos / 1_000_000);
+        }
+
+        /**
+         * Folds a successful call or connection test into the observed latency and brings the node back.
+         */
+        private synchronized void succeeded(long elapsedMillis) {
+            latencyMillis = latencyMillis == 0 ? elapsedMillis : latencyMillis + LATENCY_WEIGHT * (elapsedMillis - latencyMillis);
+            consecutiveFailures = 0;
+            cooldownMillis = 0;
+            if (!healthy) {
+                healthy = true;
+                CodingClient.log("Judge " + endpoint + " is back, latency " + elapsedMillis + "ms");
+            }
+        }
+
+        private void failed(IOException e) {
+            failed.incrementAndGet();
+            unreachable(e);
+        }
+
+        /**
+         * A connect failure takes the node out of rotation at once; other failures after several in a row.
+         */
+        private synchronized void unreachable(IOException e) {
+            consecutiveFailures++;
+            if (!RetryPolicy.isConnectFailure(e) && consecutiveFailures < MAX_CONSECUTIVE_FAILURES) {
+                return;
+            }
+            cooldownMillis = healthy ? MIN_COOLDOWN_MILLIS : Math.min(MAX_COOLDOWN_MILLIS, Math.max(MIN_COOLDOWN_MILLIS, cooldownMillis * 2));
+            retryAtMillis = System.currentTimeMillis() + cooldownMillis;
+            if (healthy) {
+                healthy = false;
+                CodingClient.log("Judge " + endpoint + " taken out of rotation after " + consecutiveFailures + " failed call(s): " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package org.bcmoj.client.net;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.bcmoj.client.metrics.Phase;
+import org.bcmoj.client.metrics.PipelineMetrics;
+
+/**
+ * One connection to a judge. Optional protocol features are negotiated by opening with (int HANDSHAKE_MAGIC,
+ * int features), answered by the judge with the magic and the features it accepts; the magic is negative, so
+ * a judge without feature support rejects it as a filename length instead of misreading a submission.
+ * <p>
+ * With FEATURE_TEST_DATA_REFS the judge may send BLOB_REQUEST (int count, then count length-prefixed hashes)
+ * in place of a frame length, and the client answers with BLOB_REPLY, request ID, count, and per hash the
+ * hash, int length (-1 when unknown) and the test data, deflated when FEATURE_DEFLATE is also on.
+ */
+public class JudgeConnection implements Closeable {
+    public static final int HANDSHAKE_MAGIC = 0xBC0C_DEF1;
+    public static final int FEATURE_DEFLATE = 1;
+    public static final int FEATURE_TEST_DATA_REFS = 2;
+    public static final int BLOB_REQUEST = -1;
+    public static final int BLOB_REPLY = -2;
+    private static final int UPLOAD_CHUNK_SIZE = 64 * 1024;
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+
+    private final String host;
+    private final int port;
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final long createdAt;
+    private volatile long lastUsedAt;
+    private volatile int useCount;
+    private DeflateCodec codec;
+    private boolean testDataRefs;
+    private TestDataSource pendingTestData;
+
+    private JudgeConnection(String host, int port, SocketChannel channel) throws IOException {
+        this.host = host;
+        this.port = port;
+        this.channel = channel;
+        this.in = new DataInputStream(new BufferedInputStream(channel.socket().getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(channel.socket().getOutputStream()));
+        this.createdAt = System.currentTimeMillis();
+        this.lastUsedAt = createdAt;
+    }
+
+    public static JudgeConnection open(String host, int port) throws IOException {
+        return open(host, port, 0);
+    }
+
+    /**
+     * Opens a plain connection, giving up with a SocketTimeoutException after {@code connectTimeout} ms (0 waits
+     * for the operating system's limit).
+     */
+    public static JudgeConnection open(String host, int port, int connectTimeout) throws IOException {
+        long startTime = System.nanoTime();
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.socket().connect(new InetSocketAddress(host, port), connectTimeout);
+            PipelineMetrics.get().recordSince(Phase.CONNECT, startTime);
+            channel.socket().setKeepAlive(true);
+            channel.socket().setTcpNoDelay(true);
+            return new JudgeConnection(host, port, channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a connection and, when {@code features} is not 0, negotiates them; {@code compressionLevel} applies
+     * if FEATURE_DEFLATE is accepted. A ProtocolException means the server does not speak the handshake (it hung
+     * up, reset the connection or answered something else); the connection is closed and the caller should
+     * reconnect without features. A server too slow to answer fails with the SocketTimeoutException instead.
+     * Features the server declines are simply off.
+     */
+    public static JudgeConnection open(String host, int port, int features, int compressionLevel) throws IOException {
+        return open(host, port, features, compressionLevel, 0);
+    }
+
+    public static JudgeConnection open(String host, int port, int features, int compressionLevel, int connectTimeout) throws IOException {
+        JudgeConnection connection = open(host, port, connectTimeout);
+        if (features != 0) {
+            try {
+                connection.negotiate(features, compressionLevel);
+            } catch (IOException e) {
+                connection.close();
+                throw e;
+            }
+        }
+        return connection;
+    }
+
+    private void negotiate(int features, int compressionLevel) throws IOException {
+        channel.socket().setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+        out.writeInt(HANDSHAKE_MAGIC);
+        out.writeInt(features);
+        out.flush();
+        int magic;
+        int flags;
+        try {
+            magic = in.readInt();
+            flags = in.readInt();
+        } catch (EOFException | SocketException e) {
+            throw new ProtocolException("Server at " + host + ":" + port + " did not answer the feature handshake: " + (e instanceof EOFException ? "connection closed" : e.getMessage()));
+        }
+        if (magic != HANDSHAKE_MAGIC) {
+            throw new ProtocolException("Server at " + host + ":" + port + " sent an unexpected feature handshake reply");
+        }
+        if ((flags & features & FEATURE_DEFLATE) != 0) {
+            codec = new DeflateCodec(compressionLevel);
+        }
+        testDataRefs = (flags & features & FEATURE_TEST_DATA_REFS) != 0;
+        channel.socket().setSoTimeout(0);
+    }
+
+    public boolean isCompressed() {
+        return codec != null;
+    }
+
+    public boolean supportsTestDataRefs() {
+        return testDataRefs;
+    }
+
+    public void setTimeout(int timeout) throws IOException {
+        channel.socket().setSoTimeout(timeout);
+    }
+
+    /**
+     * Writes one submission and returns the SHA-256 of the source. When the hash is not known yet it is
+     * computed from the same buffers that go onto the socket, so the file is read from disk only once;
+     * a known hash lets the body go out with FileChannel.transferTo instead.
+     */
+    public String writeSubmission(Submission submission, Consumer<Double> progressCallback) throws IOException {
+        long startTime = System.nanoTime();
+        File file = submission.source();
+        ConfigPayload config = testDataRefs ? submission.config() : submission.config().inline();
+        pendingTestData = config.testData();
+        String knownHash = submission.sourceHash();
+        byte[] filenameBytes = file.getName().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(filenameBytes.length);
+        out.write(filenameBytes);
+        try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = source.size();
+            out.writeLong(fileSize);
+            if (codec != null) {
+                return writeCompressed(source, fileSize, config, knownHash, progressCallback, startTime);
+            }
+            out.flush();
+            String hash = knownHash != null ? knownHash : uploadAndHash(source, fileSize, progressCallback);
+            if (knownHash != null) {
+                transfer(source, fileSize, progressCallback);
+            }
+            out.writeInt(config.length());
+            config.writeTo(out);
+            byte[] hashBytes = hash.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(hashBytes.length);
+            out.write(hashBytes);
+            out.flush();
+            PipelineMetrics.get().recordSince(Phase.UPLOAD, startTime);
+            return hash;
+        }
+    }
+
+    /**
+     * Compressed counterpart of the body/config/hash part of writeSubmission. The deflater needs the bytes on
+     * the heap anyway, so the source is read through a heap buffer and hashed on the way.
+     */
+    private String writeCompressed(FileChannel source, long fileSize, ConfigPayload config, String knownHash, Consumer<Double> progressCallback, long startTime) throws IOException {
+        MessageDigest digest = knownHash == null ? sha256() : null;
+        ByteBuffer buffer = ByteBuffer.allocate(UPLOAD_CHUNK_SIZE);
+        long sent = 0;
+        try (OutputStream body = codec.deflating(out)) {
+            while (sent < fileSize) {
+                buffer.limit((int) Math.min(buffer.capacity(), fileSize - sent));
+                if (source.read(buffer) == -1) {
+                    throw new EOFException("File shrank during upload");
+                }
+                if (digest != null) {
+                    digest.update(buffer.array(), 0, buffer.position());
+                }
+                body.write(buffer.array(), 0, buffer.position());
+                sent += buffer.position();
+                buffer.clear();
+                progressCallback.accept((double) sent / fileSize);
+            }
+        }
+        String hash = knownHash != null ? knownHash : toHex(digest.digest());
+        out.writeInt(config.length());
+        try (OutputStream body = codec.deflating(out)) {
+            config.writeTo(body);
+        }
+        byte[] hashBytes = hash.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(hashBytes.length);
+        out.write(hashBytes);
+        out.flush();
+        PipelineMetrics.get().recordSince(Phase.UPLOAD, startTime);
+        return hash;
+    }
+
+    private String uploadAndHash(FileChannel source, long fileSize, Consumer<Double> progressCallback) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(UPLOAD_CHUNK_SIZE);
+        long sent = 0;
+        while (sent < fileSize) {
+            buffer.limit((int) Math.min(buffer.capacity(), fileSize - sent));
+            if (source.read(buffer) == -1) {
+                throw new EOFException("File shrank during upload");
+            }
+            buffer.flip();
+            digest.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            sent += buffer.position();
+            buffer.clear();
+            progressCallback.accept((double) sent / fileSize);
+        }
+        return toHex(digest.digest());
+    }
+
+    private void transfer(FileChannel source, long fileSize, Consumer<Double> progressCallback) throws IOException {
+        long sent = 0;
+        while (sent < fileSize) {
+            long transferred = source.transferTo(sent, Math.min(UPLOAD_CHUNK_SIZE, fileSize - sent), channel);
+            if (transferred <= 0) {
+                throw new EOFException("File shrank during upload");
+            }
+            sent += transferred;
+            progressCallback.accept((double) sent / fileSize);
+        }
+    }
+
+    public static String hashFile(File file) throws IOException {
+        MessageDigest digest = sha256();
+        try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(UPLOAD_CHUNK_SIZE);
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Failed to calculate hash", e);
+        }
+    }
+
+    static String toHex(byte[] hashBytes) {
+        StringBuilder sb = new StringBuilder(hashBytes.length * 2);
+        for (byte b : hashBytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads one length-prefixed response frame, or returns null on the zero-length terminator.
+     */
+    public byte[] readFrame() throws IOException {
+        int length = in.readInt();
+        while (length == BLOB_REQUEST) {
+            writeBlobReply(0, readBlobRequest(), pendingTestData);
+            length = in.readInt();
+        }
+        return readFrame(length);
+    }
+
+    /**
+     * Reads the rest of a response frame whose length has already been read.
+     */
+    byte[] readFrame(int responseLength) throws IOException {
+        if (codec != null) {
+            return codec.readFrame(in, responseLength);
+        }
+        if (responseLength == 0) {
+            return null;
+        }
+        byte[] responseBytes = new byte[responseLength];
+        in.readFully(responseBytes);
+        return responseBytes;
+    }
+
+    List<String> readBlobRequest() throws IOException {
+        int count = in.readInt();
+        List<String> hashes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] hash = new byte[in.readInt()];
+            in.readFully(hash);
+            hashes.add(new String(hash, StandardCharsets.UTF_8));
+        }
+        return hashes;
+    }
+
+    /**
+     * Sends the requested test data from the source; on a multiplexed connection the caller holds the write lock.
+     */
+    void writeBlobReply(int requestId, List<String> hashes, TestDataSource source) throws IOException {
+        out.writeInt(BLOB_REPLY);
+        out.writeInt(requestId);
+        out.writeInt(hashes.size());
+        for (String hash : hashes) {
+            byte[] hashBytes = hash.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(hashBytes.length);
+            out.write(hashBytes);
+            byte[] data = source != null ? source.get(hash) : null;
+            if (data == null) {
+                out.writeInt(-1);
+                continue;
+            }
+            out.writeInt(data.length);
+            if (codec != null) {
+                try (OutputStream body = codec.deflating(out)) {
+                    body.write(data);
+                }
+            } else {
+                out.write(data);
+            }
+        }
+        out.flush();
+    }
+
+    DataInputStream input() {
+        return in;
+    }
+
+    DataOutputStream output() {
+        return out;
+    }
+
+    /**
+     * Non-blocking probe: a healthy idle connection has nothing to read and has not been closed by the peer.
+     */
+    public boolean isHealthy() {
+        if (!channel.isOpen() || !channel.isConnected()) {
+            return false;
+        }
+        synchronized (channel.blockingLock()) {
+            try {
+                if (in.available() > 0) {
+                    return false;
+                }
+                channel.configureBlocking(false);
+                try {
+                    return channel.read(ByteBuffer.allocate(1)) == 0;
+                } finally {
+                    channel.configureBlocking(true);
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    void markUsed() {
+        touch();
+        useCount++;
+    }
+
+    void touch() {
+        lastUsedAt = System.currentTimeMillis();
+    }
+
+    public boolean isReused() {
+        return useCount > 1;
+    }
+
+    public long idleMillis() {
+        return System.currentTimeMillis() - lastUsedAt;
+    }
+
+    public long getCreatedAt() { return createdAt; }
+    public String getHost() { return host; }
+    public int getPort() { return port; }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
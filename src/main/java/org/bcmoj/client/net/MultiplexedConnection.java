@@ -0,0 +1,158 @@
+package org.bcmoj.client.net;
+
+import java.io.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.bcmoj.client.metrics.Phase;
+import org.bcmoj.client.metrics.PipelineMetrics;
+
+/**
+ * Shares one judge connection between several in-flight submissions.
+ * Every request is prefixed with an int request ID, and every response frame is
+ * sent back as (int requestId, int length, body); a zero length ends that request.
+ * On a compressed connection the frame after the request ID uses the DeflateCodec layout, and blob requests
+ * for referenced test data are answered from the reader thread under the write lock.
+ */
+public class MultiplexedConnection implements Closeable {
+    private static final byte[] END = new byte[0];
+    private static final byte[] FAILED = new byte[0];
+
+    private final JudgeConnection connection;
+    private final Map<Integer, BlockingQueue<byte[]>> pending = new ConcurrentHashMap<>();
+    private final Map<Integer, TestDataSource> testData = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRequestId = new AtomicInteger(1);
+    private final Object writeLock = new Object();
+    private volatile IOException failure;
+
+    public MultiplexedConnection(JudgeConnection connection) {
+        this.connection = connection;
+        Thread reader = new Thread(this::readLoop, "judge-mux-" + connection.getHost() + ":" + connection.getPort());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public void submit(Submission submission, int timeout, Consumer<Double> progressCallback, FrameHandler frameHandler) throws IOException {
+        submit(submission, SubmissionDeadlines.fixed(timeout).start(), progressCallback, frameHandler);
+    }
+
+    /**
+     * Sends the submission and waits for its frames within the first-frame, inter-frame and total deadlines.
+     * The upload deadline is not enforced here, since the write cannot be abandoned without closing the
+     * connection the other requests share; on expiry only this request stops waiting.
+     */
+    public void submit(Submission submission, SubmissionDeadlines.Clock clock, Consumer<Double> progressCallback, FrameHandler frameHandler) throws IOException {
+        int requestId = nextRequestId.getAndIncrement();
+        BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+        pending.put(requestId, frames);
+        TestDataSource source = connection.supportsTestDataRefs() ? submission.config().testData() : null;
+        if (source != null) {
+            testData.put(requestId, source);
+        }
+        try {
+            synchronized (writeLock) {
+                checkOpen();
+                try {
+                    connection.output().writeInt(requestId);
+                    connection.writeSubmission(submission, progressCallback);
+                } catch (IOException | RuntimeException e) {
+                    // a partial request leaves the shared stream out of step, so no other request may use it
+                    fail(e instanceof IOException io ? io : new IOException(e));
+                    throw e;
+                }
+                connection.markUsed();
+            }
+            long waitStart = System.nanoTime();
+            boolean first = true;
+            while (true) {
+                SubmissionDeadlines.Stage stage = first ? SubmissionDeadlines.Stage.FIRST_FRAME : SubmissionDeadlines.Stage.INTER_FRAME;
+                int timeout = clock.timeoutFor(stage);
+                byte[] frame = timeout > 0 ? frames.poll(timeout, TimeUnit.MILLISECONDS) : frames.take();
+                if (frame == null) {
+                    throw clock.expired(stage);
+                }
+                if (first) {
+                    PipelineMetrics.get().recordSince(Phase.FIRST_FRAME, waitStart);
+                    first = false;
+                }
+                if (frame == FAILED) {
+                    throw new IOException("Multiplexed connection closed before request " + requestId + " completed", failure);
+                }
+                if (frame == END) {
+                    return;
+                }
+                frameHandler.onFrame(frame);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for request " + requestId);
+        } finally {
+            pending.remove(requestId);
+            testData.remove(requestId);
+        }
+    }
+
+    private void readLoop() {
+        DataInputStream in = connection.input();
+        try {
+            connection.setTimeout(0);
+            while (true) {
+                int requestId = in.readInt();
+                int length = in.readInt();
+                if (length == JudgeConnection.BLOB_REQUEST) {
+                    List<String> hashes = connection.readBlobRequest();
+                    synchronized (writeLock) {
+                        connection.writeBlobReply(requestId, hashes, testData.get(requestId));
+                    }
+                    continue;
+                }
+                byte[] frame = connection.readFrame(length);
+                if (frame == null) {
+                    frame = END;
+                }
+                BlockingQueue<byte[]> frames = pending.get(requestId);
+                if (frames != null) {
+                    frames.add(frame);
+                }
+            }
+        } catch (IOException e) {
+            fail(e instanceof EOFException ? new EOFException("Server closed multiplexed connection") : e);
+        } finally {
+            connection.close();
+            pending.values().forEach(frames -> frames.add(FAILED));
+        }
+    }
+
+    /**
+     * Records the first failure and closes the connection; the reader then fails every request in flight.
+     */
+    private void fail(IOException e) {
+        synchronized (this) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        connection.close();
+    }
+
+    private void checkOpen() throws IOException {
+        if (failure != null) {
+            throw new IOException("Multiplexed connection failed", failure);
+        }
+    }
+
+    public boolean isOpen() {
+        return failure == null;
+    }
+
+    public int inFlight() {
+        return pending.size();
+    }
+
+    @Override
+    public void close() {
+        connection.close();
+    }
+}
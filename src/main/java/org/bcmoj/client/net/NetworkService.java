@@ -2,109 +2,302 @@ package org.bcmoj.client.net;
 
 import java.io.*;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import org.bcmoj.client.CodingClient;
+import org.bcmoj.client.EvaluationResult;
+import org.bcmoj.client.metrics.Phase;
+import org.bcmoj.client.metrics.PipelineMetrics;
 
 public class NetworkService {
+    private static final ScheduledExecutorService deadlineTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "judge-deadline");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ConnectionPool connectionPool;
+    private volatile boolean keepAlive;
+    private volatile boolean multiplexed;
+    private AsyncJudgeClient asyncClient;
+
+    public NetworkService() {
+        this(new ConnectionPool());
+    }
+
+    public NetworkService(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public void setMultiplexed(boolean multiplexed) {
+        this.multiplexed = multiplexed;
+    }
+
+    public boolean isMultiplexed() {
+        return multiplexed;
+    }
+
+    /**
+     * Asks the judge for deflate-compressed uploads and responses at the given level (1-9); null sends plain
+     * frames. Servers without compression support fall back to plain frames automatically.
+     */
+    public void setCompressionLevel(Integer compressionLevel) {
+        connectionPool.setCompressionLevel(compressionLevel);
+    }
+
+    /**
+     * Lets judges that support it fetch test data referenced by hash instead of receiving it inline; pair with
+     * JudgeOptions.testDataRefs when building configs.
+     */
+    public void setTestDataRefs(boolean testDataRefs) {
+        connectionPool.setTestDataRefs(testDataRefs);
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
 
-    @SuppressWarnings("CallToPrintStackTrace")
     public List<String> sendAndReceive(String filePath, String jsonConfig, String serverHost, int serverPort, int TimeOut, Consumer<Double> progressCallback) throws IOException {
         List<String> responses = new ArrayList<>();
-        try (Socket socket = new Socket(serverHost, serverPort)) {
-            socket.setSoTimeout(TimeOut);
+        send(new Submission(new File(filePath), ConfigPayload.of(jsonConfig)), serverHost, serverPort, SubmissionDeadlines.fixed(TimeOut), progressCallback, frame -> responses.add(new String(frame, StandardCharsets.UTF_8)));
+        CodingClient.log("Received response from server: " + responses);
+        return responses;
+    }
 
-            try (DataOutputStream out = new DataOutputStream(socket.getOutputStream()); DataInputStream in = new DataInputStream(socket.getInputStream())) {
-                CodingClient.log("Sending data to "+serverHost + ":" + serverPort+"...");
-                File file = new File(filePath);
-                if (!file.exists()) {
-                    throw new FileNotFoundException("File not exist: " + filePath);
-                }
-                byte[] filenameBytes = file.getName().getBytes(StandardCharsets.UTF_8);
-                out.writeInt(filenameBytes.length);
-                out.write(filenameBytes);
-                long fileSize = file.length();
-                out.writeLong(fileSize);
-                try (FileInputStream fis = new FileInputStream(file); BufferedInputStream bis = new BufferedInputStream(fis)) {
-                    byte[] buffer = new byte[4096];
-                    long sent = 0;
-                    int bytesRead;
-                    while ((bytesRead = bis.read(buffer)) != -1) {
-                        out.write(buffer, 0, bytesRead);
-                        sent += bytesRead;
-                        progressCallback.accept((double) sent / fileSize);
-                    }
-                }
-                byte[] jsonBytes = jsonConfig.getBytes(StandardCharsets.UTF_8);
-                out.writeInt(jsonBytes.length);
-                out.write(jsonBytes);
-                String hash = computeFileHash(filePath);
-                byte[] hashBytes = hash.getBytes(StandardCharsets.UTF_8);
-                out.writeInt(hashBytes.length);
-                out.write(hashBytes);
-                CodingClient.log("Send OK!");
-                CodingClient.log("Waiting for response...");
-                while (true) {
-                    try {
-                        int responseLength = in.readInt();
-                        if (responseLength == 0) {
-                            break;
-                        }
-                        byte[] responseBytes = new byte[responseLength];
-                        in.readFully(responseBytes);
-                        responses.add(new String(responseBytes, StandardCharsets.UTF_8));
-                    } catch (EOFException e) {
-                        break;
-                    }
+    /**
+     * Like sendAndReceive, but parses every response frame as soon as it arrives and reports each checkpoint to
+     * the listener with the running totals, instead of buffering the whole response.
+     */
+    public EvaluationResult sendAndStream(String filePath, String jsonConfig, String serverHost, int serverPort, int TimeOut, Consumer<Double> progressCallback, Map<Integer, String> resultMapping, ResponseListener listener) throws IOException {
+        return sendAndStream(filePath, ConfigPayload.of(jsonConfig), serverHost, serverPort, TimeOut, progressCallback, resultMapping, listener);
+    }
+
+    public EvaluationResult sendAndStream(String filePath, ConfigPayload config, String serverHost, int serverPort, int TimeOut, Consumer<Double> progressCallback, Map<Integer, String> resultMapping, ResponseListener listener) throws IOException {
+        return sendAndStream(new Submission(new File(filePath), config), serverHost, serverPort, TimeOut, progressCallback, resultMapping, listener);
+    }
+
+    public EvaluationResult sendAndStream(Submission submission, String serverHost, int serverPort, int TimeOut, Consumer<Double> progressCallback, Map<Integer, String> resultMapping, ResponseListener listener) throws IOException {
+        return sendAndStream(submission, serverHost, serverPort, SubmissionDeadlines.fixed(TimeOut), progressCallback, resultMapping, listener);
+    }
+
+    /**
+     * sendAndStream with per-phase deadlines; when one expires the connection is closed, so the judge stops
+     * working on the submission, and a SubmissionTimeoutException naming the phase is thrown.
+     */
+    public EvaluationResult sendAndStream(Submission submission, String serverHost, int serverPort, SubmissionDeadlines deadlines, Consumer<Double> progressCallback, Map<Integer, String> resultMapping, ResponseListener listener) throws IOException {
+        CheckpointParser parser = new CheckpointParser();
+        ResultAccumulator accumulator = new ResultAccumulator(resultMapping, listener);
+        CheckpointTable frameRows = new CheckpointTable();
+        long[] parseNanos = new long[1];
+        send(submission, serverHost, serverPort, deadlines, progressCallback, frame -> {
+            long startTime = System.nanoTime();
+            frameRows.clear();
+            try {
+                parser.parseFrame(frame, frameRows);
+            } catch (IOException e) {
+                CodingClient.log("Failed to parse response: " + new String(frame, StandardCharsets.UTF_8) + ". Error: " + e.getMessage());
+            }
+            parseNanos[0] += System.nanoTime() - startTime;
+            // the listener (and any GUI work it does) runs outside the PARSE timing
+            frameRows.forEach(accumulator);
+        });
+        PipelineMetrics.get().record(Phase.PARSE, parseNanos[0]);
+        CodingClient.log("Received " + accumulator.totalTests() + " checkpoint results from server");
+        return accumulator.toEvaluationResult();
+    }
+
+    /**
+     * Columnar counterpart of sendAndStream: parsed checkpoints are appended to the table instead of becoming
+     * TestCaseResults, so large responses are collected without per-checkpoint allocation.
+     */
+    public CheckpointTable sendAndCollect(Submission submission, String serverHost, int serverPort, int TimeOut, Consumer<Double> progressCallback, CheckpointTable table) throws IOException {
+        return sendAndCollect(submission, serverHost, serverPort, SubmissionDeadlines.fixed(TimeOut), progressCallback, table);
+    }
+
+    public CheckpointTable sendAndCollect(Submission submission, String serverHost, int serverPort, SubmissionDeadlines deadlines, Consumer<Double> progressCallback, CheckpointTable table) throws IOException {
+        CheckpointParser parser = new CheckpointParser();
+        long[] parseNanos = new long[1];
+        send(submission, serverHost, serverPort, deadlines, progressCallback, frame -> {
+            long startTime = System.nanoTime();
+            try {
+                parser.parseFrame(frame, table);
+            } catch (IOException e) {
+                CodingClient.log("Failed to parse response: " + new String(frame, StandardCharsets.UTF_8) + ". Error: " + e.getMessage());
+            }
+            parseNanos[0] += System.nanoTime() - startTime;
+        });
+        PipelineMetrics.get().record(Phase.PARSE, parseNanos[0]);
+        CodingClient.log("Received " + table.size() + " checkpoint results from server");
+        return table;
+    }
+
+    /**
+     * Non-blocking variant of sendAndStream: returns immediately and completes on a shared I/O thread. The
+     * future fails with a SubmissionTimeoutException after {@code deadlineMillis} (0 for none), and cancelling it
+     * hangs up on the judge. Always uses a fresh connection with the plain protocol.
+     */
+    public CompletableFuture<EvaluationResult> sendAsync(Submission submission, String serverHost, int serverPort, long deadlineMillis, Map<Integer, String> resultMapping, ResponseListener listener) {
+        return sendAsync(submission, serverHost, serverPort, SubmissionDeadlines.total(deadlineMillis), resultMapping, listener);
+    }
+
+    public CompletableFuture<EvaluationResult> sendAsync(Submission submission, String serverHost, int serverPort, SubmissionDeadlines deadlines, Map<Integer, String> resultMapping, ResponseListener listener) {
+        try {
+            return asyncClient().submit(submission, serverHost, serverPort, deadlines, resultMapping, listener);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private synchronized AsyncJudgeClient asyncClient() throws IOException {
+        if (asyncClient == null) {
+            asyncClient = new AsyncJudgeClient();
+        }
+        return asyncClient;
+    }
+
+    @SuppressWarnings("CallToPrintStackTrace")
+    private void send(Submission submission, String serverHost, int serverPort, SubmissionDeadlines deadlines, Consumer<Double> progressCallback, FrameHandler frameHandler) throws IOException {
+        if (!submission.source().exists()) {
+            throw new FileNotFoundException("File not exist: " + submission.source().getPath());
+        }
+        long startTime = System.nanoTime();
+        SubmissionDeadlines.Clock clock = deadlines.start();
+        boolean success = false;
+        try {
+            CodingClient.log("Sending data to " + serverHost + ":" + serverPort + "...");
+            if (multiplexed) {
+                MultiplexedConnection connection;
+                try {
+                    connection = connectionPool.acquireMultiplexed(serverHost, serverPort, clock.timeoutFor(SubmissionDeadlines.Stage.CONNECT));
+                } catch (SubmissionTimeoutException e) {
+                    throw e;
+                } catch (SocketTimeoutException e) {
+                    throw clock.expired(SubmissionDeadlines.Stage.CONNECT);
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
-                throw e;
+                connection.submit(submission, clock, progressCallback, frameHandler);
+            } else {
+                sendPooled(submission, serverHost, serverPort, clock, progressCallback, frameHandler);
             }
+            success = true;
         } catch (Exception e) {
             System.err.println("Unable to connect to server:" + e.getMessage());
             e.printStackTrace();
             throw e;
+        } finally {
+            PipelineMetrics.get().recordSince(Phase.TOTAL, startTime);
+            PipelineMetrics.get().submissionFinished(success);
         }
-        CodingClient.log("Received response from server: " + responses);
-        return responses;
     }
 
-    private String computeFileHash(String filePath) throws IOException {
-        try (InputStream fis = Files.newInputStream(Paths.get(filePath))) {
-            java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-256");
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                digest.update(buffer, 0, bytesRead);
+    /**
+     * Reads are bounded by the socket timeout, set before every frame to the first-frame or inter-frame limit
+     * clamped to what is left of the total; a blocking write has no timeout, so a timer closes the connection if
+     * the upload outlasts its deadline.
+     */
+    private void sendPooled(Submission submission, String serverHost, int serverPort, SubmissionDeadlines.Clock clock, Consumer<Double> progressCallback, FrameHandler frameHandler) throws IOException {
+        JudgeConnection connection;
+        try {
+            connection = connectionPool.acquire(serverHost, serverPort, clock.timeoutFor(SubmissionDeadlines.Stage.CONNECT));
+        } catch (SubmissionTimeoutException e) {
+            throw e;
+        } catch (SocketTimeoutException e) {
+            throw clock.expired(SubmissionDeadlines.Stage.CONNECT);
+        }
+        int frames = 0;
+        boolean reusable = false;
+        AtomicReference<SubmissionTimeoutException> expired = new AtomicReference<>();
+        try {
+            ScheduledFuture<?> uploadTimer = watchUpload(connection, clock, expired);
+            try {
+                connection.writeSubmission(submission, progressCallback);
+            } finally {
+                if (uploadTimer != null) {
+                    uploadTimer.cancel(false);
+                }
             }
-            byte[] hashBytes = digest.digest();
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
+            CodingClient.log("Send OK!");
+            CodingClient.log("Waiting for response...");
+            long waitStart = System.nanoTime();
+            while (true) {
+                SubmissionDeadlines.Stage stage = frames == 0 ? SubmissionDeadlines.Stage.FIRST_FRAME : SubmissionDeadlines.Stage.INTER_FRAME;
+                connection.setTimeout(clock.timeoutFor(stage));
+                byte[] frame;
+                try {
+                    frame = connection.readFrame();
+                    if (frames == 0) {
+                        PipelineMetrics.get().recordSince(Phase.FIRST_FRAME, waitStart);
+                    }
+                } catch (SocketTimeoutException e) {
+                    throw clock.expired(stage);
+                } catch (EOFException e) {
+                    // only the zero-length terminator ends a response; a partial result must not pass as complete
+                    throw new EOFException("Connection closed before end of response");
+                }
+                if (frame == null) {
+                    reusable = keepAlive;
+                    break;
+                }
+                frames++;
+                frameHandler.onFrame(frame);
             }
-            return sb.toString();
-        } catch (Exception e) {
-            throw new IOException("Failed to calculate hash", e);
+        } catch (IOException e) {
+            if (expired.get() != null) {
+                reusable = false;
+                throw expired.get();
+            }
+            if (!connection.isReused() || frames > 0 || e instanceof SocketTimeoutException) {
+                throw e;
+            }
+            // the server dropped an idle keep-alive connection; nothing was judged, so retry on a fresh one
+            CodingClient.log("Pooled connection to " + serverHost + ":" + serverPort + " was closed by server, reconnecting...");
+            connectionPool.release(connection, false);
+            connection = null;
+            sendPooled(submission, serverHost, serverPort, clock, progressCallback, frameHandler);
+        } finally {
+            if (connection != null) {
+                connectionPool.release(connection, reusable && expired.get() == null);
+            }
+        }
+    }
+
+    private static ScheduledFuture<?> watchUpload(JudgeConnection connection, SubmissionDeadlines.Clock clock, AtomicReference<SubmissionTimeoutException> expired) throws SubmissionTimeoutException {
+        int timeout = clock.timeoutFor(SubmissionDeadlines.Stage.UPLOAD);
+        if (timeout == 0) {
+            return null;
         }
+        return deadlineTimer.schedule(() -> {
+            expired.set(clock.expired(SubmissionDeadlines.Stage.UPLOAD));
+            connection.close();
+        }, timeout, TimeUnit.MILLISECONDS);
     }
 
-    public void testConnection(String serverHost, int serverPort) throws IOException {
+    public long testConnection(String serverHost, int serverPort) throws IOException {
         long startTime = System.currentTimeMillis();
         try (Socket socket = new Socket(serverHost, serverPort)) {
             socket.setSoTimeout(5000);
             long elapsed = System.currentTimeMillis() - startTime;
             CodingClient.log("Successfully connected to server " + serverHost + ":" + serverPort + ", elapsed " + elapsed + "ms");
+            return elapsed;
         } catch (IOException e) {
             long elapsed = System.currentTimeMillis() - startTime;
             CodingClient.log("Failed to connect to server " + serverHost + ":" + serverPort + ", elapsed " + elapsed + "ms");
             throw new IOException(e);
+        } finally {
+            CodingClient.log("Connection pool: " + connectionPool.stats(serverHost, serverPort));
         }
     }
-
-
 }
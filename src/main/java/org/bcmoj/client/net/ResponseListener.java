@@ -0,0 +1,8 @@
+package org.bcmoj.client.net;
+
+import org.bcmoj.client.TestCaseResult;
+
+@FunctionalInterface
+public interface ResponseListener {
+    void onTestCase(TestCaseResult testCase, ResultAccumulator totals);
+}
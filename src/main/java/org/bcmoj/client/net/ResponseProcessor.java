@@ -5,7 +5,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.bcmoj.client.CodingClient;
 import org.bcmoj.client.EvaluationResult;
 import org.bcmoj.client.TestCaseResult;
+import org.bcmoj.client.metrics.Phase;
+import org.bcmoj.client.metrics.PipelineMetrics;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -13,8 +17,48 @@ import java.util.Map;
 
 public class ResponseProcessor {
     private static final ObjectMapper mapper = new ObjectMapper();
+    public static final Map<Integer, String> DEFAULT_RESULT_MAPPING = Map.of(
+            -5, "Security Check Failed",
+            -4, "Compile Error",
+            -3, "Wrong Answer",
+            2, "Real Time Limit Exceeded",
+            3, "Memory Limit Exceeded",
+            4, "Runtime Error",
+            5, "System Error",
+            1, "Accepted"
+    );
 
     public static EvaluationResult processResponses(List<String> responses, Map<Integer, String> resultMapping) {
+        long startTime = System.nanoTime();
+        try {
+            return parseResponses(responses, resultMapping);
+        } finally {
+            PipelineMetrics.get().recordSince(Phase.PARSE, startTime);
+        }
+    }
+
+    /**
+     * Streaming variant of processResponses: parses each frame token by token into the table, without building a
+     * JsonNode tree or a TestCaseResult per checkpoint. Returns the table.
+     */
+    public static CheckpointTable processResponses(List<String> responses, CheckpointTable table) {
+        long startTime = System.nanoTime();
+        CheckpointParser parser = new CheckpointParser();
+        try {
+            for (String response : responses) {
+                try {
+                    parser.parseFrame(response.getBytes(StandardCharsets.UTF_8), table);
+                } catch (IOException e) {
+                    CodingClient.log("Failed to parse response: " + response + ". Error: " + e.getMessage());
+                }
+            }
+        } finally {
+            PipelineMetrics.get().recordSince(Phase.PARSE, startTime);
+        }
+        return table;
+    }
+
+    private static EvaluationResult parseResponses(List<String> responses, Map<Integer, String> resultMapping) {
         List<TestCaseResult> testResults = new ArrayList<>();
         int accepted = 0;
         int totalTests = 0;
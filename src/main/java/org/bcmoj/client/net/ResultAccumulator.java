@@ -0,0 +1,64 @@
+package org.bcmoj.client.net;
+
+import org.bcmoj.client.EvaluationResult;
+import org.bcmoj.client.TestCaseResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns parsed checkpoints into TestCaseResults and keeps the running totals up to date as they arrive.
+ */
+public class ResultAccumulator implements CheckpointSink {
+    private final Map<Integer, String> resultMapping;
+    private final ResponseListener listener;
+    private final List<TestCaseResult> testResults = new ArrayList<>();
+    private int accepted;
+    private int totalTests;
+    private double totalTime;
+    private long totalMemory;
+
+    public ResultAccumulator(Map<Integer, String> resultMapping, ResponseListener listener) {
+        this.resultMapping = resultMapping;
+        this.listener = listener;
+    }
+
+    @Override
+    public void onCheckpoint(int index, int resultCode, double timeUsed, long memoryUsed) {
+        add(new TestCaseResult(String.valueOf(index), resultMapping.getOrDefault(resultCode, "Unknown Status"), timeUsed, memoryUsed), resultCode == 1);
+    }
+
+    /**
+     * Reports the checkpoints of a finished result to the listener as if they were arriving now, for results
+     * that were not streamed (a hedged winner, or a submission joined while in flight).
+     */
+    public void replay(EvaluationResult result) {
+        String acceptedText = resultMapping.get(1);
+        for (TestCaseResult testCase : result.testResults()) {
+            add(testCase, testCase.resultText().equals(acceptedText));
+        }
+    }
+
+    private void add(TestCaseResult testCase, boolean isAccepted) {
+        testResults.add(testCase);
+        totalTests++;
+        totalTime += testCase.timeUsed();
+        totalMemory += testCase.memoryUsed();
+        if (isAccepted) {
+            accepted++;
+        }
+        if (listener != null) {
+            listener.onTestCase(testCase, this);
+        }
+    }
+
+    public int accepted() { return accepted; }
+    public int totalTests() { return totalTests; }
+    public double averageTime() { return totalTests > 0 ? totalTime / totalTests : 0.0; }
+    public long averageMemory() { return totalTests > 0 ? totalMemory / totalTests : 0L; }
+
+    public EvaluationResult toEvaluationResult() {
+        return new EvaluationResult(List.copyOf(testResults), accepted, totalTests, averageTime(), averageMemory());
+    }
+}
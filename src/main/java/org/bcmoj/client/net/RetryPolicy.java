@@ -0,0 +1,103 @@
+package org.bcmoj.client.net;
+
+import org.bcmoj.client.CodingClient;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.PortUnreachableException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+
+/**
+ * How often a submission is attempted before its failure reaches the caller. Only failures that cannot have
+ * produced a different verdict are retried: the judge could not be reached, or the connection broke before the
+ * response was complete. Every request carries the SHA-256 of its source, so sending the same submission again
+ * is a repeat of it rather than a new one. Deadline expiries are not retried, since their time is already spent.
+ */
+public record RetryPolicy(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis) {
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+    public static final RetryPolicy DEFAULT = new RetryPolicy(4, 200, 5_000);
+
+    public RetryPolicy {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+    }
+
+    /**
+     * DEFAULT backoff with the given number of retries after the first attempt.
+     */
+    public static RetryPolicy retries(int retries) {
+        return new RetryPolicy(retries + 1, DEFAULT.baseBackoffMillis, DEFAULT.maxBackoffMillis);
+    }
+
+    /**
+     * Full jitter: a uniformly random wait up to base * 2^(retry - 1), capped at the maximum, so clients that
+     * failed together do not all come back at the same moment.
+     */
+    public long backoffMillis(int retry) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(retry - 1, 20));
+        return ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+    }
+
+    /**
+     * Runs the attempt, retrying retryable failures after a backoff; the last failure is thrown.
+     */
+    public <T> T run(Attempt<T> attempt) throws IOException {
+        return run(attempt, () -> true);
+    }
+
+    /**
+     * Like run, but a failure is only retried while {@code mayRetry} holds, e.g. until part of the response has
+     * already been passed on to a listener that would otherwise see it twice.
+     */
+    public <T> T run(Attempt<T> attempt, BooleanSupplier mayRetry) throws IOException {
+        for (int retry = 1; ; retry++) {
+            try {
+                return attempt.run();
+            } catch (IOException e) {
+                if (retry >= maxAttempts || !isRetryable(e) || !mayRetry.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                long backoff = backoffMillis(retry);
+                CodingClient.log("Attempt " + retry + "/" + maxAttempts + " failed (" + e.getMessage() + "), retrying in " + backoff + "ms");
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted before retrying");
+                }
+            }
+        }
+    }
+
+    public static boolean isRetryable(IOException e) {
+        return isConnectFailure(e) || isConnectionLost(e);
+    }
+
+    static boolean isConnectFailure(IOException e) {
+        return e instanceof ConnectException || e instanceof NoRouteToHostException
+                || e instanceof UnknownHostException || e instanceof PortUnreachableException
+                || e instanceof SubmissionTimeoutException timeout && timeout.getStage() == SubmissionDeadlines.Stage.CONNECT;
+    }
+
+    /**
+     * The judge hung up or reset the connection mid-exchange, including a multiplexed connection failing under
+     * the request.
+     */
+    static boolean isConnectionLost(IOException e) {
+        Throwable cause = e.getCause();
+        return e instanceof EOFException || e instanceof SocketException
+                || cause instanceof EOFException || cause instanceof SocketException;
+    }
+
+    @FunctionalInterface
+    public interface Attempt<T> {
+        T run() throws IOException;
+    }
+}
@@ -0,0 +1,13 @@
+package org.bcmoj.client.net;
+
+import java.io.File;
+
+/**
+ * One source file and its judge config. {@code sourceHash} is the SHA-256 of the source when the caller already
+ * knows it, or null to have it computed during upload.
+ */
+public record Submission(File source, ConfigPayload config, String sourceHash) {
+    public Submission(File source, ConfigPayload config) {
+        this(source, config, null);
+    }
+}
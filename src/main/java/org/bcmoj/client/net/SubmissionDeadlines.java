@@ -0,0 +1,136 @@
+package org.bcmoj.client.net;
+
+import org.bcmoj.client.metrics.Phase;
+import org.bcmoj.client.metrics.PipelineMetrics;
+
+/**
+ * Per-phase limits for one submission in milliseconds, 0 meaning no limit. Connect and upload bound the
+ * request, first-frame the wait for the judge to compile and start answering, inter-frame every later gap
+ * between frames, and total the whole exchange.
+ */
+public record SubmissionDeadlines(long connectMillis, long uploadMillis, long firstFrameMillis, long interFrameMillis, long totalMillis) {
+    private static final long MIN_CONNECT_MILLIS = 3_000;
+    private static final long MAX_CONNECT_MILLIS = 15_000;
+    private static final long MIN_UPLOAD_MILLIS = 5_000;
+    private static final long MIN_UPLOAD_BYTES_PER_SECOND = 256 * 1024;
+    private static final long COMPILE_ALLOWANCE_MILLIS = 15_000;
+    private static final long MIN_INTER_FRAME_MILLIS = 10_000;
+    private static final long CHECKPOINT_OVERHEAD_MILLIS = 100;
+    private static final int RUN_SLACK = 2;
+    private static final int OBSERVED_FACTOR = 3;
+    private static final long MIN_OBSERVATIONS = 20;
+
+    public enum Stage {
+        CONNECT,
+        UPLOAD,
+        FIRST_FRAME,
+        INTER_FRAME,
+        TOTAL
+    }
+
+    /**
+     * The legacy single timeout: applied to connect and to every read, with no overall bound.
+     */
+    public static SubmissionDeadlines fixed(int timeoutMillis) {
+        return new SubmissionDeadlines(timeoutMillis, 0, timeoutMillis, timeoutMillis, 0);
+    }
+
+    /**
+     * Only an overall bound, as used by the deadline of NetworkService.sendAsync.
+     */
+    public static SubmissionDeadlines total(long totalMillis) {
+        return new SubmissionDeadlines(0, 0, 0, 0, totalMillis);
+    }
+
+    /**
+     * Deadlines for a problem whose {@code checkpoints} each run for at most {@code timeLimitMillis}. The judge
+     * runs every checkpoint before the response is complete, so the time after compiling is bounded by the time
+     * limit times the checkpoint count (with slack for process start and judge overhead); the fixed allowances
+     * are widened to a multiple of the observed p99 latency once enough submissions have been recorded.
+     */
+    public static SubmissionDeadlines derive(int timeLimitMillis, int checkpoints, long uploadBytes) {
+        long run = Math.max(1, checkpoints) * (Math.max(0, timeLimitMillis) * (long) RUN_SLACK + CHECKPOINT_OVERHEAD_MILLIS);
+        long connect = Math.min(MAX_CONNECT_MILLIS, Math.max(MIN_CONNECT_MILLIS, observed(Phase.CONNECT)));
+        long upload = Math.max(MIN_UPLOAD_MILLIS + uploadBytes * 1000 / MIN_UPLOAD_BYTES_PER_SECOND, observed(Phase.UPLOAD));
+        long firstFrame = Math.max(COMPILE_ALLOWANCE_MILLIS, observed(Phase.FIRST_FRAME)) + run;
+        long interFrame = Math.max(MIN_INTER_FRAME_MILLIS, run);
+        // the first-frame allowance already covers the whole run, for judges that answer only once it is over
+        long total = connect + upload + firstFrame;
+        return new SubmissionDeadlines(connect, upload, firstFrame, interFrame, total);
+    }
+
+    private static long observed(Phase phase) {
+        PipelineMetrics metrics = PipelineMetrics.get();
+        if (metrics.count(phase) < MIN_OBSERVATIONS) {
+            return 0;
+        }
+        return (long) Math.ceil(metrics.percentileMillis(phase, 99) * OBSERVED_FACTOR);
+    }
+
+    public long limitMillis(Stage stage) {
+        return switch (stage) {
+            case CONNECT -> connectMillis;
+            case UPLOAD -> uploadMillis;
+            case FIRST_FRAME -> firstFrameMillis;
+            case INTER_FRAME -> interFrameMillis;
+            case TOTAL -> totalMillis;
+        };
+    }
+
+    /**
+     * Starts the clock for one exchange.
+     */
+    public Clock start() {
+        return new Clock(System.nanoTime());
+    }
+
+    /**
+     * Tracks the total deadline of one exchange; retries on a fresh connection keep the same clock.
+     */
+    public final class Clock {
+        private final long startNanos;
+
+        private Clock(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        public SubmissionDeadlines deadlines() {
+            return SubmissionDeadlines.this;
+        }
+
+        /**
+         * Milliseconds left before the total deadline, or Long.MAX_VALUE without one.
+         */
+        public long remainingMillis() {
+            if (totalMillis <= 0) {
+                return Long.MAX_VALUE;
+            }
+            return totalMillis - (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        /**
+         * The timeout to use for the next wait of the given stage, clamped to what is left of the total, as a
+         * socket timeout (0 for none). Throws once the total deadline has already passed.
+         */
+        public int timeoutFor(Stage stage) throws SubmissionTimeoutException {
+            long remaining = remainingMillis();
+            if (remaining <= 0) {
+                throw new SubmissionTimeoutException(Stage.TOTAL, totalMillis);
+            }
+            long limit = limitMillis(stage);
+            long timeout = limit > 0 ? Math.min(limit, remaining) : remaining;
+            return timeout == Long.MAX_VALUE ? 0 : (int) Math.min(Integer.MAX_VALUE, timeout);
+        }
+
+        /**
+         * The stage to blame when a wait for {@code stage} timed out: TOTAL if the overall deadline cut it short.
+         */
+        public SubmissionTimeoutException expired(Stage stage) {
+            long limit = limitMillis(stage);
+            if (totalMillis > 0 && (limit <= 0 || remainingMillis() <= 0)) {
+                return new SubmissionTimeoutException(Stage.TOTAL, totalMillis);
+            }
+            return new SubmissionTimeoutException(stage, limit);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.bcmoj.client.net;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * A submission ran past one of its SubmissionDeadlines; the connection it used has been closed.
+ */
+public class SubmissionTimeoutException extends SocketTimeoutException {
+    private final SubmissionDeadlines.Stage stage;
+    private final long limitMillis;
+
+    public SubmissionTimeoutException(SubmissionDeadlines.Stage stage, long limitMillis) {
+        super(describe(stage) + " deadline of " + limitMillis + "ms expired");
+        this.stage = stage;
+        this.limitMillis = limitMillis;
+    }
+
+    public SubmissionDeadlines.Stage getStage() {
+        return stage;
+    }
+
+    public long getLimitMillis() {
+        return limitMillis;
+    }
+
+    private static String describe(SubmissionDeadlines.Stage stage) {
+        return switch (stage) {
+            case CONNECT -> "Connect";
+            case UPLOAD -> "Upload";
+            case FIRST_FRAME -> "First response frame";
+            case INTER_FRAME -> "Next response frame";
+            case TOTAL -> "Submission";
+        };
+    }
+}
@@ -0,0 +1,12 @@
+package org.bcmoj.client.net;
+
+/**
+ * Where a connection finds the test data a judge requests by hash.
+ */
+@FunctionalInterface
+public interface TestDataSource {
+    /**
+     * The UTF-8 test data with this SHA-256, or null when it is not available.
+     */
+    byte[] get(String hash);
+}
@@ -0,0 +1,87 @@
+package org.bcmoj.client.net;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed store of checkpoint input and output text, one file per SHA-256 under a directory. Configs
+ * built with test data references name checkpoints by these hashes, and the judge fetches the ones it has not
+ * seen yet from here.
+ */
+public class TestDataStore implements TestDataSource {
+    private final Path directory;
+    private final Set<String> known = ConcurrentHashMap.newKeySet();
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong servedBytes = new AtomicLong();
+
+    public TestDataStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    public static Path defaultDirectory() {
+        return Path.of(System.getProperty("java.io.tmpdir"), "bcmoj-testdata");
+    }
+
+    /**
+     * Stores the text as UTF-8 if it is not there yet and returns its hash.
+     */
+    public String put(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        String hash = hash(bytes);
+        if (known.contains(hash)) {
+            return hash;
+        }
+        Path file = directory.resolve(hash);
+        if (!Files.exists(file)) {
+            Path temp = Files.createTempFile(directory, hash, ".tmp");
+            try {
+                Files.write(temp, bytes);
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            stored.incrementAndGet();
+        }
+        known.add(hash);
+        return hash;
+    }
+
+    public static String hash(byte[] bytes) throws IOException {
+        MessageDigest digest = JudgeConnection.sha256();
+        return JudgeConnection.toHex(digest.digest(bytes));
+    }
+
+    /**
+     * Returns the stored bytes, or null when the hash is unknown or the file was removed.
+     */
+    @Override
+    public byte[] get(String hash) {
+        if (hash.length() != 64 || !hash.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(directory.resolve(hash));
+            served.incrementAndGet();
+            servedBytes.addAndGet(bytes.length);
+            return bytes;
+        } catch (IOException e) {
+            known.remove(hash);
+            return null;
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public String stats() {
+        return String.format("stored=%d, served=%d, servedBytes=%d", stored.get(), served.get(), servedBytes.get());
+    }
+}
@@ -0,0 +1,592 @@
+package org.bcmoj.client.stub;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.bcmoj.client.net.DeflateCodec;
+import org.bcmoj.client.net.JudgeConnection;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process judge that speaks the client's wire protocol and answers with synthetic checkpoint results, for
+ * load tests and benchmarks that should not depend on a real judge. Connections are kept open and served in a
+ * loop, so it works with keep-alive clients; with {@link #setMultiplexed} every request and response frame
+ * carries a request ID, as MultiplexedConnection expects. Clients that open with the feature handshake get
+ * compressed requests and responses and may send test data references, unless turned off; referenced test
+ * data the stub has not seen yet is fetched from the client before responding.
+ */
+public class StubJudgeServer implements Closeable {
+    public enum Format { AUTO, NEW, OLD }
+
+    private static final String USAGE = """
+            Usage: StubJudgeServer [options]
+              --port N                listen port (default 12345, 0 picks a free one)
+              --format FORMAT         auto | new | old (default auto, follows the submitted config)
+              --checkpoints N         checkpoints per response (default 0, one per config checkpoint)
+              --latency MS            delay before the first result (default 0)
+              --checkpoint-latency MS extra delay per checkpoint (default 0)
+              --per-frame N           checkpoints per response frame (default 0, all in one frame)
+              --accept-rate R         fraction of Accepted checkpoints (default 1.0)
+              --no-verify             skip source hash verification
+              --mux                   expect request IDs, as sent by multiplexed clients
+              --no-compression        decline compression in the feature handshake
+              --no-test-data-refs     decline test data references in the feature handshake
+              --drop-after N          hang up after N response frames, before the terminator
+            """;
+    private static final JsonFactory factory = new JsonFactory();
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+    private static final long BLOB_REPLY_TIMEOUT_MILLIS = 30_000;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers;
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong testDataFetched = new AtomicLong();
+    private final Set<String> knownTestData = ConcurrentHashMap.newKeySet();
+    private volatile Format format = Format.AUTO;
+    private volatile int checkpoints;
+    private volatile long latencyMillis;
+    private volatile long checkpointLatencyMillis;
+    private volatile int checkpointsPerFrame;
+    private volatile double acceptRate = 1.0;
+    private volatile boolean verifyHash = true;
+    private volatile boolean multiplexed;
+    private volatile boolean compression = true;
+    private volatile boolean testDataRefs = true;
+    private volatile int dropAfterFrames = -1;
+
+    /**
+     * Binds to the given port (0 picks a free one) and starts accepting connections.
+     */
+    public StubJudgeServer(int port) throws IOException {
+        serverSocket = new ServerSocket(port);
+        workers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-judge-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        Thread acceptor = new Thread(this::acceptLoop, "stub-judge-acceptor-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = 12345;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--port")) {
+                port = Integer.parseInt(args[i + 1]);
+            }
+        }
+        StubJudgeServer server = new StubJudgeServer(port);
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port" -> i++;
+                case "--format" -> server.setFormat(Format.valueOf(args[++i].toUpperCase()));
+                case "--checkpoints" -> server.setCheckpoints(Integer.parseInt(args[++i]));
+                case "--latency" -> server.setLatencyMillis(Long.parseLong(args[++i]));
+                case "--checkpoint-latency" -> server.setCheckpointLatencyMillis(Long.parseLong(args[++i]));
+                case "--per-frame" -> server.setCheckpointsPerFrame(Integer.parseInt(args[++i]));
+                case "--accept-rate" -> server.setAcceptRate(Double.parseDouble(args[++i]));
+                case "--no-verify" -> server.setVerifyHash(false);
+                case "--mux" -> server.setMultiplexed(true);
+                case "--no-compression" -> server.setCompression(false);
+                case "--no-test-data-refs" -> server.setTestDataRefs(false);
+                case "--drop-after" -> server.setDropAfterFrames(Integer.parseInt(args[++i]));
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.err.print(USAGE);
+                    server.close();
+                    System.exit(2);
+                }
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println("Stub judge served " + server.getRequests() + " requests on "
+                + server.getConnections() + " connections, " + server.getBytesReceived() + " bytes received")));
+        System.out.println("Stub judge listening on port " + server.getPort());
+        Thread.currentThread().join();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Response format; AUTO answers in the format of the submitted config.
+     */
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Number of checkpoints to report; 0 reports one per checkpoint in the submitted config.
+     */
+    public void setCheckpoints(int checkpoints) {
+        this.checkpoints = checkpoints;
+    }
+
+    /**
+     * Delay between receiving a submission and sending the first result, standing in for compilation.
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public void setCheckpointLatencyMillis(long checkpointLatencyMillis) {
+        this.checkpointLatencyMillis = checkpointLatencyMillis;
+    }
+
+    /**
+     * Splits the results into frames of this many checkpoints; 0 sends them all in one frame.
+     */
+    public void setCheckpointsPerFrame(int checkpointsPerFrame) {
+        this.checkpointsPerFrame = checkpointsPerFrame;
+    }
+
+    /**
+     * Fraction of checkpoints reported as Accepted; the rest are Wrong Answer.
+     */
+    public void setAcceptRate(double acceptRate) {
+        this.acceptRate = acceptRate;
+    }
+
+    /**
+     * When the uploaded source does not match the sent hash, every checkpoint is reported as System Error.
+     */
+    public void setVerifyHash(boolean verifyHash) {
+        this.verifyHash = verifyHash;
+    }
+
+    public void setMultiplexed(boolean multiplexed) {
+        this.multiplexed = multiplexed;
+    }
+
+    /**
+     * Whether compression is accepted in the feature handshake; when off the server still answers it, declining.
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    public void setTestDataRefs(boolean testDataRefs) {
+        this.testDataRefs = testDataRefs;
+    }
+
+    /**
+     * Closes the connection after this many response frames instead of finishing the response, like a judge
+     * that dies mid-submission; negative (the default) always sends the whole response.
+     */
+    public void setDropAfterFrames(int dropAfterFrames) {
+        this.dropAfterFrames = dropAfterFrames;
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                connections.incrementAndGet();
+                workers.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Stub judge failed to accept connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new CountingInputStream(socket.getInputStream()), READ_CHUNK_SIZE));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DeflateCodec codec = null;
+            Map<Integer, CompletableFuture<Map<String, byte[]>>> blobReplies = new ConcurrentHashMap<>();
+            while (true) {
+                int first;
+                try {
+                    first = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (first == JudgeConnection.HANDSHAKE_MAGIC) {
+                    int requested = in.readInt();
+                    int supported = (compression ? JudgeConnection.FEATURE_DEFLATE : 0) | (testDataRefs ? JudgeConnection.FEATURE_TEST_DATA_REFS : 0);
+                    out.writeInt(JudgeConnection.HANDSHAKE_MAGIC);
+                    out.writeInt(requested & supported);
+                    out.flush();
+                    codec = (requested & supported & JudgeConnection.FEATURE_DEFLATE) != 0 ? new DeflateCodec() : null;
+                    continue;
+                }
+                if (first == JudgeConnection.BLOB_REPLY) {
+                    int requestId = in.readInt();
+                    Map<String, byte[]> blobs = readBlobReply(in, codec);
+                    CompletableFuture<Map<String, byte[]>> waiting = blobReplies.remove(requestId);
+                    if (waiting != null) {
+                        waiting.complete(blobs);
+                    }
+                    continue;
+                }
+                int requestId = multiplexed ? first : 0;
+                Request request = readRequest(in, multiplexed ? in.readInt() : first, codec);
+                requests.incrementAndGet();
+                DeflateCodec responseCodec = codec;
+                if (multiplexed) {
+                    workers.execute(() -> respond(request, requestId, null, out, responseCodec, blobReplies));
+                } else {
+                    respond(request, requestId, in, out, responseCodec, blobReplies);
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // client went away mid-request
+        } catch (IOException e) {
+            System.err.println("Stub judge connection failed: " + e.getMessage());
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    private Request readRequest(DataInputStream in, int filenameLength, DeflateCodec codec) throws IOException {
+        byte[] filename = new byte[filenameLength];
+        in.readFully(filename);
+        long size = in.readLong();
+        MessageDigest digest = verifyHash ? sha256() : null;
+        if (codec != null) {
+            return readCompressed(in, size, digest, codec);
+        }
+        byte[] chunk = new byte[(int) Math.min(READ_CHUNK_SIZE, Math.max(size, 1))];
+        long remaining = size;
+        while (remaining > 0) {
+            int read = in.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+            if (read < 0) {
+                throw new EOFException("Source ended after " + (size - remaining) + " of " + size + " bytes");
+            }
+            if (digest != null) {
+                digest.update(chunk, 0, read);
+            }
+            remaining -= read;
+        }
+        byte[] config = new byte[in.readInt()];
+        in.readFully(config);
+        return new Request(config, readHash(in, digest));
+    }
+
+    private Request readCompressed(DataInputStream in, long size, MessageDigest digest, DeflateCodec codec) throws IOException {
+        long received = codec.readDeflated(in, new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                if (digest != null) {
+                    digest.update(b, off, len);
+                }
+            }
+        });
+        if (received != size) {
+            throw new IOException("Compressed source inflated to " + received + " of " + size + " bytes");
+        }
+        ByteArrayOutputStream config = new ByteArrayOutputStream(in.readInt());
+        codec.readDeflated(in, config);
+        return new Request(config.toByteArray(), readHash(in, digest));
+    }
+
+    private static Map<String, byte[]> readBlobReply(DataInputStream in, DeflateCodec codec) throws IOException {
+        int count = in.readInt();
+        Map<String, byte[]> blobs = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            byte[] hash = new byte[in.readInt()];
+            in.readFully(hash);
+            int length = in.readInt();
+            byte[] data = null;
+            if (length >= 0 && codec != null) {
+                ByteArrayOutputStream inflated = new ByteArrayOutputStream(length);
+                codec.readDeflated(in, inflated);
+                data = inflated.toByteArray();
+            } else if (length >= 0) {
+                data = new byte[length];
+                in.readFully(data);
+            }
+            blobs.put(new String(hash, StandardCharsets.UTF_8), data);
+        }
+        return blobs;
+    }
+
+    private static boolean readHash(DataInputStream in, MessageDigest digest) throws IOException {
+        byte[] hash = new byte[in.readInt()];
+        in.readFully(hash);
+        return digest == null || HexFormat.of().formatHex(digest.digest()).equals(new String(hash, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * {@code in} is null on multiplexed connections, where the serve loop hands blob replies over through
+     * {@code blobReplies}; a plain connection sends nothing else before the reply, so it is read right here.
+     */
+    private void respond(Request request, int requestId, DataInputStream in, DataOutputStream out, DeflateCodec codec, Map<Integer, CompletableFuture<Map<String, byte[]>>> blobReplies) {
+        try {
+            ConfigShape shape = inspect(request.config());
+            boolean valid = request.hashMatches() && fetchTestData(shape.testDataRefs(), requestId, in, out, codec, blobReplies);
+            boolean newFormat = format == Format.AUTO ? shape.newFormat() : format == Format.NEW;
+            int count = checkpoints > 0 ? checkpoints : shape.checkpoints();
+            int perFrame = checkpointsPerFrame > 0 ? checkpointsPerFrame : Math.max(count, 1);
+            int dropAfter = dropAfterFrames;
+            int sent = 0;
+            sleep(latencyMillis);
+            for (int first = 1; first <= count && sent != dropAfter; first += perFrame) {
+                int last = Math.min(count, first + perFrame - 1);
+                sleep(checkpointLatencyMillis * (last - first + 1));
+                writeFrame(out, requestId, buildFrame(first, last, newFormat, valid), codec);
+                sent++;
+            }
+            if (sent == dropAfter) {
+                // closing the stream closes the socket, failing every request on a multiplexed connection
+                synchronized (out) {
+                    out.close();
+                }
+                return;
+            }
+            writeFrame(out, requestId, new byte[0], codec);
+        } catch (IOException e) {
+            // connection closed while responding
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Asks the client for referenced test data the stub has not seen and checks it against its hashes; false
+     * when some of it is missing or corrupt.
+     */
+    private boolean fetchTestData(Set<String> refs, int requestId, DataInputStream in, DataOutputStream out, DeflateCodec codec, Map<Integer, CompletableFuture<Map<String, byte[]>>> blobReplies) throws IOException, InterruptedException {
+        Set<String> missing = new HashSet<>(refs);
+        missing.removeAll(knownTestData);
+        if (missing.isEmpty()) {
+            return true;
+        }
+        Map<String, byte[]> blobs;
+        try {
+            CompletableFuture<Map<String, byte[]>> reply = new CompletableFuture<>();
+            synchronized (out) {
+                if (in == null) {
+                    blobReplies.put(requestId, reply);
+                }
+                if (multiplexed) {
+                    out.writeInt(requestId);
+                }
+                out.writeInt(JudgeConnection.BLOB_REQUEST);
+                out.writeInt(missing.size());
+                for (String hash : missing) {
+                    byte[] hashBytes = hash.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(hashBytes.length);
+                    out.write(hashBytes);
+                }
+                out.flush();
+            }
+            if (in != null) {
+                if (in.readInt() != JudgeConnection.BLOB_REPLY) {
+                    throw new IOException("Expected a blob reply");
+                }
+                in.readInt();
+                reply.complete(readBlobReply(in, codec));
+            }
+            blobs = reply.get(BLOB_REPLY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+        boolean valid = true;
+        for (String hash : missing) {
+            byte[] data = blobs.get(hash);
+            if (data == null || !HexFormat.of().formatHex(sha256().digest(data)).equals(hash)) {
+                valid = false;
+                continue;
+            }
+            knownTestData.add(hash);
+            testDataFetched.incrementAndGet();
+        }
+        return valid;
+    }
+
+    private void writeFrame(DataOutputStream out, int requestId, byte[] frame, DeflateCodec codec) throws IOException {
+        synchronized (out) {
+            if (multiplexed) {
+                out.writeInt(requestId);
+            }
+            if (codec != null) {
+                codec.writeFrame(out, frame);
+            } else {
+                out.writeInt(frame.length);
+                out.write(frame);
+            }
+            out.flush();
+        }
+    }
+
+    private byte[] buildFrame(int first, int last, boolean newFormat, boolean valid) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder sb = new StringBuilder(newFormat ? "{\"checkpoints\":{" : "{");
+        for (int i = first; i <= last; i++) {
+            int res = !valid ? 5 : random.nextDouble() < acceptRate ? 1 : -3;
+            int time = random.nextInt(1, 100);
+            int mem = random.nextInt(512, 65536);
+            if (i > first) {
+                sb.append(',');
+            }
+            if (newFormat) {
+                sb.append('"').append(i).append("\":{\"res\":").append(res).append(",\"time\":").append(time).append(",\"mem\":").append(mem).append('}');
+            } else {
+                sb.append('"').append(i).append("_res\":").append(res)
+                        .append(",\"").append(i).append("_time\":").append(time)
+                        .append(",\"").append(i).append("_mem\":").append(mem);
+            }
+        }
+        sb.append(newFormat ? "}}" : "}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Works out the config format, checkpoint count and test data references with a streaming pass, skipping
+     * over inline example data.
+     */
+    static ConfigShape inspect(byte[] config) {
+        boolean newFormat = false;
+        int count = 0;
+        Set<String> refs = new HashSet<>();
+        try (JsonParser parser = factory.createParser(config)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return new ConfigShape(false, 1, refs);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (name.equals("time_limit") || name.equals("enable_o2")) {
+                    newFormat = true;
+                }
+                if (name.equals("checkpoints") && value == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String key = parser.currentName();
+                        if (parser.nextToken() == JsonToken.START_OBJECT) {
+                            count++;
+                            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                String field = parser.currentName();
+                                if (parser.nextToken() == JsonToken.VALUE_STRING && field.endsWith("_ref")) {
+                                    refs.add(parser.getText());
+                                }
+                                parser.skipChildren();
+                            }
+                        } else {
+                            if (key.endsWith("_in") || key.endsWith("_in_ref")) {
+                                count++;
+                            }
+                            if (key.endsWith("_ref") && parser.currentToken() == JsonToken.VALUE_STRING) {
+                                refs.add(parser.getText());
+                            }
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            return new ConfigShape(newFormat, Math.max(count, 1), refs);
+        }
+        return new ConfigShape(newFormat, Math.max(count, 1), refs);
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Failed to calculate hash", e);
+        }
+    }
+
+    public long getConnections() {
+        return connections.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Bytes read from client sockets, as they were on the wire.
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * Referenced test data blobs fetched from clients.
+     */
+    public long getTestDataFetched() {
+        return testDataFetched.get();
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+        workers.shutdownNow();
+    }
+
+    private class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                bytesReceived.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                bytesReceived.addAndGet(read);
+            }
+            return read;
+        }
+    }
+
+    private record Request(byte[] config, boolean hashMatches) {
+    }
+
+    record ConfigShape(boolean newFormat, int checkpoints, Set<String> testDataRefs) {
+    }
+}
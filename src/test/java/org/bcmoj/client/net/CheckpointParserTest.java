@@ -0,0 +1,131 @@
+package org.bcmoj.client.net;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CheckpointParserTest {
+    private static final JsonFactory factory = new JsonFactory();
+
+    @Test
+    void parsesNewFormat() throws IOException {
+        CheckpointTable table = parse(new CheckpointParser(), "{\"checkpoints\": {\"1\": {\"res\": 1, \"time\": 12.5, \"mem\": 1024}, \"2\": {\"mem\": 2048, \"res\": 3, \"time\": 7}}}");
+        assertEquals(2, table.size());
+        assertRow(table, 0, 1, 1, 12.5, 1024);
+        assertRow(table, 1, 2, 3, 7.0, 2048);
+    }
+
+    @Test
+    void parsesOldFormatInOrderOfResults() throws IOException {
+        CheckpointTable table = parse(new CheckpointParser(), "{\"2_time\": 3.5, \"2_res\": 2, \"1_res\": 1, \"1_mem\": 64, \"2_mem\": 128, \"status\": \"ok\"}");
+        assertEquals(2, table.size());
+        assertRow(table, 0, 2, 2, 3.5, 128);
+        assertRow(table, 1, 1, 1, 0.0, 64);
+    }
+
+    @Test
+    void skipsCheckpointsWithInvalidIndex() throws IOException {
+        CheckpointTable table = parse(new CheckpointParser(), "{\"checkpoints\": {\"x\": {\"res\": 4, \"time\": 1, \"mem\": 1}, \"3\": {\"res\": 1, \"time\": 2, \"mem\": 8}}}");
+        assertEquals(1, table.size());
+        assertRow(table, 0, 3, 1, 2.0, 8);
+
+        table = parse(new CheckpointParser(), "{\"a_res\": 4, \"99999999999_res\": 4, \"5_res\": 1, \"5_time\": 1.5}");
+        assertEquals(1, table.size());
+        assertRow(table, 0, 5, 1, 1.5, 0);
+    }
+
+    @Test
+    void ignoresCheckpointsWithoutResult() throws IOException {
+        CheckpointTable table = parse(new CheckpointParser(), "{\"checkpoints\": {\"1\": {\"time\": 1, \"mem\": 1}, \"2\": [1, 2]}, \"3_time\": 4.0}");
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void doesNotCarryOldFormatFieldsBetweenFrames() throws IOException {
+        CheckpointParser parser = new CheckpointParser();
+        parse(parser, "{\"1_res\": 1, \"1_time\": 9.5, \"1_mem\": 512}");
+        CheckpointTable table = parse(parser, "{\"1_res\": 2}");
+        assertEquals(1, table.size());
+        assertRow(table, 0, 1, 2, 0.0, 0);
+
+        parse(parser, "{\"3_time\": 4.0, \"3_mem\": 77}");
+        table = parse(parser, "{\"3_res\": 1}");
+        assertEquals(1, table.size());
+        assertRow(table, 0, 3, 1, 0.0, 0);
+    }
+
+    @Test
+    void rejectsFrameThatIsNotAnObject() {
+        assertThrows(IOException.class, () -> parse(new CheckpointParser(), "[1, 2, 3]"));
+    }
+
+    @Test
+    void readDoubleMatchesParseDouble() throws IOException {
+        String[] numbers = {
+                "0.0", "1.0", "12.5", "-12.5", "-0.0", "-0.5", "0.001", "0.000000001", "123.456",
+                "0.1", "0.2", "0.3", "2.675", "1.005", "3.14159265358979", "0.1234567890123456",
+                "0.000000000000000000001", "0.0000000000000000000001", "0.00000000000000000000001",
+                "900719925474099.1", "9007199254740991.0", "9007199254740993.0", "1234567890123456789.5",
+                "1.5e3", "-2E-5", "6.02214076e23", "1e400", "4.9e-324", "42", "-7"
+        };
+        for (String number : numbers) {
+            assertSameDouble(number, read(factory, number));
+        }
+    }
+
+    @Test
+    void readDoubleHandlesLeadingZeros() throws IOException {
+        JsonFactory lenient = JsonFactory.builder().enable(JsonReadFeature.ALLOW_LEADING_ZEROS_FOR_NUMBERS).build();
+        for (String number : new String[]{"007.25", "-00.5", "000.000125"}) {
+            assertSameDouble(number, read(lenient, number));
+        }
+    }
+
+    @Test
+    void readDoubleMatchesParseDoubleForRandomDecimals() throws IOException {
+        Random random = new Random(17);
+        for (int i = 0; i < 100_000; i++) {
+            long mantissa = random.nextLong() % 100_000_000_000_000_000L;
+            int scale = 1 + random.nextInt(24);
+            String digits = Long.toString(Math.abs(mantissa));
+            if (digits.length() <= scale) {
+                digits = "0".repeat(scale - digits.length() + 1) + digits;
+            }
+            String number = (mantissa < 0 ? "-" : "") + digits.substring(0, digits.length() - scale) + "." + digits.substring(digits.length() - scale);
+            assertSameDouble(number, read(factory, number));
+        }
+    }
+
+    private static CheckpointTable parse(CheckpointParser parser, String frame) throws IOException {
+        CheckpointTable table = new CheckpointTable();
+        parser.parseFrame(frame.getBytes(StandardCharsets.UTF_8), table);
+        return table;
+    }
+
+    private static void assertRow(CheckpointTable table, int row, int index, int resultCode, double timeUsed, long memoryUsed) {
+        assertEquals(index, table.index(row));
+        assertEquals(resultCode, table.resultCode(row));
+        assertEquals(timeUsed, table.timeUsed(row));
+        assertEquals(memoryUsed, table.memoryUsed(row));
+    }
+
+    private static void assertSameDouble(String number, double actual) {
+        double expected = Double.parseDouble(number);
+        assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual), number + ": expected " + expected + " but was " + actual);
+    }
+
+    private static double read(JsonFactory factory, String number) throws IOException {
+        try (JsonParser parser = factory.createParser(number)) {
+            parser.nextToken();
+            return CheckpointParser.readDouble(parser);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.bcmoj.client.net;
+
+import org.bcmoj.client.stub.StubJudgeServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.bcmoj.client.net.MultiplexedConnectionTest.submission;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConnectionPoolTest {
+    @Test
+    void keepAliveReusesConnection() throws IOException {
+        try (StubJudgeServer server = new StubJudgeServer(0); ConnectionPool pool = new ConnectionPool()) {
+            NetworkService networkService = new NetworkService(pool);
+            networkService.setKeepAlive(true);
+            for (int i = 0; i < 3; i++) {
+                assertEquals(1, networkService.sendAndStream(submission(), "localhost", server.getPort(), 5_000, progress -> {}, ResponseProcessor.DEFAULT_RESULT_MAPPING, null).totalTests());
+            }
+            ConnectionPool.PoolStats stats = pool.stats("localhost", server.getPort());
+            assertEquals(1, server.getConnections());
+            assertEquals(1, stats.created());
+            assertEquals(2, stats.reused());
+            assertEquals(1, stats.idle());
+        }
+    }
+
+    @Test
+    void evictsIdleConnectionPastTimeout() throws Exception {
+        try (StubJudgeServer server = new StubJudgeServer(0); ConnectionPool pool = new ConnectionPool(8, 50)) {
+            pool.release(pool.acquire("localhost", server.getPort()), true);
+            Thread.sleep(100);
+            pool.release(pool.acquire("localhost", server.getPort()), true);
+            ConnectionPool.PoolStats stats = pool.stats("localhost", server.getPort());
+            assertEquals(2, stats.created());
+            assertEquals(0, stats.reused());
+            assertEquals(1, stats.evicted());
+        }
+    }
+}
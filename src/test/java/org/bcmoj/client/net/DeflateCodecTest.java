@@ -0,0 +1,114 @@
+package org.bcmoj.client.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeflateCodecTest {
+    @Test
+    void deflatedBodiesRoundTrip() throws IOException {
+        DeflateCodec codec = new DeflateCodec();
+        for (byte[] body : new byte[][]{new byte[0], text(10), text(200_000), random(300_000)}) {
+            ByteArrayOutputStream wire = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(wire);
+            try (OutputStream deflating = codec.deflating(out)) {
+                // uneven writes, so chunk boundaries do not line up with the input
+                for (int offset = 0; offset < body.length; offset += 7_777) {
+                    deflating.write(body, offset, Math.min(7_777, body.length - offset));
+                }
+            }
+            out.writeInt(42);
+
+            DataInputStream in = input(wire);
+            ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+            assertEquals(body.length, codec.readDeflated(in, inflated));
+            assertArrayEquals(body, inflated.toByteArray());
+            assertEquals(42, in.readInt());
+        }
+    }
+
+    @Test
+    void framesRoundTrip() throws IOException {
+        DeflateCodec codec = new DeflateCodec(9);
+        byte[][] frames = {text(1), text(5_000), random(100_000), "{\"checkpoints\": {}}".getBytes(StandardCharsets.UTF_8)};
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(wire);
+        for (byte[] frame : frames) {
+            codec.writeFrame(out, frame);
+        }
+        codec.writeFrame(out, new byte[0]);
+
+        DataInputStream in = input(wire);
+        for (byte[] frame : frames) {
+            assertArrayEquals(frame, codec.readFrame(in));
+        }
+        assertNull(codec.readFrame(in));
+    }
+
+    @Test
+    void compressesRepetitiveFrames() throws IOException {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        new DeflateCodec().writeFrame(new DataOutputStream(wire), text(100_000));
+        assertTrue(wire.size() < 10_000, "compressed to " + wire.size() + " bytes");
+    }
+
+    @Test
+    void rejectsInvalidFrameLengths() {
+        DeflateCodec codec = new DeflateCodec();
+        assertThrows(IOException.class, () -> codec.readFrame(frameHeader(16, -1)));
+        assertThrows(IOException.class, () -> codec.readFrame(frameHeader(16, Integer.MAX_VALUE)));
+        assertThrows(IOException.class, () -> codec.readFrame(frameHeader(-16, 100)));
+    }
+
+    @Test
+    void rejectsFrameShorterThanDeclared() throws IOException {
+        DeflateCodec codec = new DeflateCodec();
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        codec.writeFrame(new DataOutputStream(wire), text(1_000));
+        byte[] bytes = wire.toByteArray();
+        // claim one more raw byte than the compressed data holds
+        bytes[7]++;
+        assertThrows(IOException.class, () -> codec.readFrame(new DataInputStream(new ByteArrayInputStream(bytes))));
+    }
+
+    private static DataInputStream frameHeader(int length, int rawLength) throws IOException {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(wire);
+        out.writeInt(length);
+        out.writeInt(rawLength);
+        out.write(new byte[16]);
+        return input(wire);
+    }
+
+    private static DataInputStream input(ByteArrayOutputStream wire) {
+        return new DataInputStream(new ByteArrayInputStream(wire.toByteArray()));
+    }
+
+    private static byte[] text(int size) {
+        byte[] line = "{\"res\": 1, \"time\": 12.5, \"mem\": 1024}\n".getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = line[i % line.length];
+        }
+        return bytes;
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(21).nextBytes(bytes);
+        return bytes;
+    }
+}
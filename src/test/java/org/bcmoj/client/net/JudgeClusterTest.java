@@ -0,0 +1,107 @@
+package org.bcmoj.client.net;
+
+import org.bcmoj.client.EvaluationResult;
+import org.bcmoj.client.metrics.PipelineMetrics;
+import org.bcmoj.client.stub.StubJudgeServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.bcmoj.client.net.MultiplexedConnectionTest.submission;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JudgeClusterTest {
+    @Test
+    void losingMultiplexedHedgeLeavesSharedConnectionOpen() throws Exception {
+        PipelineMetrics.get().reset();
+        Submission submission = submission();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (StubJudgeServer slow = server(); StubJudgeServer fast = server()) {
+            slow.setLatencyMillis(1_000);
+            NetworkService networkService = new NetworkService();
+            networkService.setMultiplexed(true);
+            // hedging waits for enough first-frame history
+            for (int i = 0; i < 20; i++) {
+                networkService.sendAndStream(submission, "localhost", fast.getPort(), 5_000, progress -> {}, ResponseProcessor.DEFAULT_RESULT_MAPPING, null);
+            }
+            Future<EvaluationResult> bystander = executor.submit(() -> networkService.sendAndStream(submission, "localhost", slow.getPort(), 5_000, progress -> {}, ResponseProcessor.DEFAULT_RESULT_MAPPING, null));
+            MultiplexedConnection shared = networkService.getConnectionPool().acquireMultiplexed("localhost", slow.getPort());
+
+            // the first attempt goes to the slow judge and is still uploading when the hedge to the fast one wins
+            AtomicInteger calls = new AtomicInteger();
+            try (JudgeCluster cluster = new JudgeCluster(networkService, List.of(new JudgeCluster.Endpoint("judge-a", 1), new JudgeCluster.Endpoint("judge-b", 2)))) {
+                cluster.setHedging(true);
+                EvaluationResult result = cluster.executeHedged((host, port, responded) -> {
+                    boolean first = calls.getAndIncrement() == 0;
+                    Consumer<Double> progress = first ? value -> pause(300) : value -> {};
+                    return networkService.sendAndStream(submission, "localhost", first ? slow.getPort() : fast.getPort(), 5_000, progress, ResponseProcessor.DEFAULT_RESULT_MAPPING, (testCase, totals) -> responded.run());
+                });
+                assertEquals(4, result.totalTests());
+                assertEquals(1, cluster.getHedgeWins());
+                assertEquals(4, bystander.get(5, TimeUnit.SECONDS).totalTests());
+                assertTrue(shared.isOpen());
+            }
+            networkService.getConnectionPool().close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failsOverFromUnreachableNodeAndTakesItOutOfRotation() throws IOException {
+        int deadPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            deadPort = socket.getLocalPort();
+        }
+        try (StubJudgeServer server = new StubJudgeServer(0);
+             JudgeCluster cluster = new JudgeCluster(new NetworkService(), List.of(new JudgeCluster.Endpoint("localhost", deadPort), new JudgeCluster.Endpoint("localhost", server.getPort())))) {
+            NetworkService networkService = new NetworkService();
+            for (int i = 0; i < 5; i++) {
+                EvaluationResult result = cluster.execute((host, port) -> networkService.sendAndStream(submission(), host, port, 5_000, progress -> {}, ResponseProcessor.DEFAULT_RESULT_MAPPING, null));
+                assertEquals(1, result.totalTests());
+            }
+            JudgeCluster.NodeStats dead = cluster.stats().get(0);
+            assertFalse(dead.healthy());
+            assertTrue(dead.failed() <= 1);
+            assertEquals(5, cluster.stats().get(1).completed());
+        }
+    }
+
+    @Test
+    void cancelledAsyncCallIsNotANodeFailure() {
+        CompletableFuture<EvaluationResult> pending = new CompletableFuture<>();
+        try (JudgeCluster cluster = new JudgeCluster(new NetworkService(), List.of(new JudgeCluster.Endpoint("judge-a", 1)))) {
+            cluster.executeAsync((host, port) -> pending).cancel(false);
+            JudgeCluster.NodeStats stats = cluster.stats().get(0);
+            assertTrue(pending.isCancelled());
+            assertEquals(0, stats.failed());
+            assertTrue(stats.healthy());
+        }
+    }
+
+    private static StubJudgeServer server() throws IOException {
+        StubJudgeServer server = new StubJudgeServer(0);
+        server.setMultiplexed(true);
+        server.setCheckpoints(4);
+        return server;
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
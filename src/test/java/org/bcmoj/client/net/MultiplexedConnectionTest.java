@@ -0,0 +1,84 @@
+package org.bcmoj.client.net;
+
+import org.bcmoj.client.EvaluationResult;
+import org.bcmoj.client.stub.StubJudgeServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MultiplexedConnectionTest {
+    @Test
+    void failedWriteFailsEveryRequestOnTheConnection() throws Exception {
+        Submission submission = submission();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (StubJudgeServer server = new StubJudgeServer(0); ConnectionPool pool = new ConnectionPool()) {
+            server.setMultiplexed(true);
+            server.setLatencyMillis(2_000);
+            MultiplexedConnection connection = pool.acquireMultiplexed("localhost", server.getPort());
+            Future<?> waiting = executor.submit(() -> {
+                connection.submit(submission, 10_000, progress -> {}, frame -> {});
+                return null;
+            });
+            while (connection.inFlight() == 0) {
+                Thread.sleep(1);
+            }
+
+            assertThrows(IllegalStateException.class, () -> connection.submit(submission, 10_000, progress -> {
+                throw new IllegalStateException("upload aborted");
+            }, frame -> {}));
+            assertFalse(connection.isOpen());
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, failure.getCause());
+            assertNotSame(connection, pool.acquireMultiplexed("localhost", server.getPort()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void demultiplexesConcurrentRequests() throws Exception {
+        Submission submission = submission();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (StubJudgeServer server = new StubJudgeServer(0); ConnectionPool pool = new ConnectionPool()) {
+            server.setMultiplexed(true);
+            server.setCheckpoints(6);
+            server.setCheckpointsPerFrame(1);
+            server.setCheckpointLatencyMillis(5);
+            NetworkService networkService = new NetworkService(pool);
+            networkService.setMultiplexed(true);
+            List<Future<EvaluationResult>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> networkService.sendAndStream(submission, "localhost", server.getPort(), 5_000, progress -> {}, ResponseProcessor.DEFAULT_RESULT_MAPPING, null)));
+            }
+            for (Future<EvaluationResult> result : results) {
+                assertEquals(6, result.get(5, TimeUnit.SECONDS).totalTests());
+            }
+            assertEquals(1, server.getConnections());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static Submission submission() throws IOException {
+        Path source = Files.createTempFile("submission", ".cpp");
+        source.toFile().deleteOnExit();
+        Files.writeString(source, "int main() { return 0; }\n");
+        return new Submission(new File(source.toString()), ConfigPayload.of("{\"1_in\": \"1\", \"1_out\": \"1\"}"));
+    }
+}
@@ -0,0 +1,68 @@
+package org.bcmoj.client.net;
+
+import org.bcmoj.client.EvaluationResult;
+import org.bcmoj.client.stub.StubJudgeServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.bcmoj.client.net.MultiplexedConnectionTest.submission;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NetworkServiceTest {
+    @Test
+    void streamsCompleteResponse() throws IOException {
+        try (StubJudgeServer server = server(false)) {
+            NetworkService networkService = new NetworkService();
+            EvaluationResult result = networkService.sendAndStream(submission(), "localhost", server.getPort(), 5_000, progress -> {}, ResponseProcessor.DEFAULT_RESULT_MAPPING, null);
+            assertEquals(4, result.totalTests());
+            assertEquals(4, result.accepted());
+        }
+    }
+
+    @Test
+    void responseCutOffBeforeTerminatorFails() throws IOException {
+        try (StubJudgeServer server = server(false)) {
+            server.setDropAfterFrames(2);
+            NetworkService networkService = new NetworkService();
+            IOException e = assertThrows(EOFException.class, () -> networkService.sendAndStream(submission(), "localhost", server.getPort(), 5_000, progress -> {}, ResponseProcessor.DEFAULT_RESULT_MAPPING, null));
+            assertTrue(RetryPolicy.isRetryable(e));
+        }
+    }
+
+    @Test
+    void multiplexedResponseCutOffBeforeTerminatorFails() throws IOException {
+        try (StubJudgeServer server = server(true)) {
+            server.setDropAfterFrames(2);
+            NetworkService networkService = new NetworkService();
+            networkService.setMultiplexed(true);
+            IOException e = assertThrows(IOException.class, () -> networkService.sendAndStream(submission(), "localhost", server.getPort(), 5_000, progress -> {}, ResponseProcessor.DEFAULT_RESULT_MAPPING, null));
+            assertTrue(RetryPolicy.isRetryable(e));
+            networkService.getConnectionPool().close();
+        }
+    }
+
+    @Test
+    void asyncResponseCutOffBeforeTerminatorFails() throws Exception {
+        try (StubJudgeServer server = server(false)) {
+            server.setDropAfterFrames(2);
+            NetworkService networkService = new NetworkService();
+            ExecutionException e = assertThrows(ExecutionException.class, () -> networkService.sendAsync(submission(), "localhost", server.getPort(), 5_000, ResponseProcessor.DEFAULT_RESULT_MAPPING, null).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(EOFException.class, e.getCause());
+        }
+    }
+
+    private static StubJudgeServer server(boolean multiplexed) throws IOException {
+        StubJudgeServer server = new StubJudgeServer(0);
+        server.setMultiplexed(multiplexed);
+        server.setCheckpoints(4);
+        server.setCheckpointsPerFrame(1);
+        return server;
+    }
+}
@@ -0,0 +1,56 @@
+package org.bcmoj.client.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTest {
+    @Test
+    void classifiesFailures() {
+        assertTrue(RetryPolicy.isRetryable(new ConnectException("refused")));
+        assertTrue(RetryPolicy.isRetryable(new SubmissionTimeoutException(SubmissionDeadlines.Stage.CONNECT, 100)));
+        assertTrue(RetryPolicy.isRetryable(new EOFException("closed")));
+        assertTrue(RetryPolicy.isRetryable(new IOException("mux failed", new SocketException("reset"))));
+        assertFalse(RetryPolicy.isRetryable(new SubmissionTimeoutException(SubmissionDeadlines.Stage.FIRST_FRAME, 100)));
+        assertFalse(RetryPolicy.isRetryable(new IOException("bad response")));
+    }
+
+    @Test
+    void retriesUntilAttemptsRunOut() {
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(EOFException.class, () -> new RetryPolicy(3, 0, 0).run(() -> {
+            attempts.incrementAndGet();
+            throw new EOFException("closed");
+        }));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void stopsRetryingOnceMayRetryIsFalse() {
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(EOFException.class, () -> new RetryPolicy(3, 0, 0).run(() -> {
+            attempts.incrementAndGet();
+            throw new EOFException("closed");
+        }, () -> attempts.get() < 2));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void doesNotRetryNonRetryableFailure() {
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(IOException.class, () -> new RetryPolicy(3, 0, 0).run(() -> {
+            attempts.incrementAndGet();
+            throw new IOException("bad response");
+        }));
+        assertEquals(1, attempts.get());
+    }
+}
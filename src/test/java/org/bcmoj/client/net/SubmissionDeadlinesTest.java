@@ -0,0 +1,28 @@
+package org.bcmoj.client.net;
+
+import org.bcmoj.client.metrics.PipelineMetrics;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SubmissionDeadlinesTest {
+    @Test
+    void totalCountsTheRunOnce() {
+        PipelineMetrics.get().reset();
+        SubmissionDeadlines deadlines = SubmissionDeadlines.derive(1_000, 10, 0);
+        long run = 10 * (1_000 * 2 + 100);
+        assertEquals(15_000 + run, deadlines.firstFrameMillis());
+        assertEquals(run, deadlines.interFrameMillis());
+        assertEquals(deadlines.connectMillis() + deadlines.uploadMillis() + deadlines.firstFrameMillis(), deadlines.totalMillis());
+    }
+
+    @Test
+    void expiredTotalIsBlamedOnTotal() throws InterruptedException {
+        SubmissionDeadlines.Clock clock = new SubmissionDeadlines(0, 0, 10_000, 0, 1).start();
+        Thread.sleep(5);
+        SubmissionTimeoutException e = assertThrows(SubmissionTimeoutException.class, () -> clock.timeoutFor(SubmissionDeadlines.Stage.FIRST_FRAME));
+        assertEquals(SubmissionDeadlines.Stage.TOTAL, e.getStage());
+        assertEquals(SubmissionDeadlines.Stage.TOTAL, clock.expired(SubmissionDeadlines.Stage.FIRST_FRAME).getStage());
+    }
+}